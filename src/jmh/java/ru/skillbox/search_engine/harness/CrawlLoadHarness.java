@@ -0,0 +1,128 @@
+package ru.skillbox.search_engine.harness;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.skillbox.search_engine.SearchEngineApplication;
+import ru.skillbox.search_engine.services.IndexingService;
+import ru.skillbox.search_engine.services.StatisticsService;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Нагрузочный прогон обхода: поднимает сгенерированный сайт {@link SyntheticSite} и базу,
+ * запускает приложение без веб-сервера, выполняет полную индексацию и печатает
+ * страниц в секунду, записей индекса в секунду и пиковый размер кучи.
+ * <p>
+ * Параметры передаются как {@code --имя=значение}: pages, fan-out, depth, page-size, latency-ms,
+ * error-rate, seed, rps, crawl-workers, jdbc-url. Без jdbc-url используется встроенный PostgreSQL
+ * (initdb не запускается от root — в этом случае укажите внешнюю базу).
+ * H2 не подходит: запись индекса использует синтаксис PostgreSQL.
+ */
+public class CrawlLoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        SyntheticSite.Settings settings = new SyntheticSite.Settings(
+                Integer.parseInt(options.getOrDefault("pages", "1000")),
+                Integer.parseInt(options.getOrDefault("fan-out", "10")),
+                Integer.parseInt(options.getOrDefault("depth", "10")),
+                Integer.parseInt(options.getOrDefault("page-size", "8192")),
+                Integer.parseInt(options.getOrDefault("latency-ms", "20")),
+                Double.parseDouble(options.getOrDefault("error-rate", "0.01")),
+                Long.parseLong(options.getOrDefault("seed", "42")));
+
+        EmbeddedPostgres postgres = null;
+        String jdbcUrl = options.get("jdbc-url");
+        try (SyntheticSite site = new SyntheticSite(settings)) {
+            if (jdbcUrl == null) {
+                postgres = EmbeddedPostgres.start();
+                jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+            }
+            Map<String, String> properties = new HashMap<>();
+            properties.put("spring.datasource.url", jdbcUrl);
+            properties.put("spring.datasource.username", options.getOrDefault("db-user", "postgres"));
+            properties.put("spring.datasource.password", options.getOrDefault("db-password", "postgres"));
+            properties.put("spring.jpa.show-sql", "false");
+            properties.put("logging.level.root", "WARN");
+            properties.put("logging.level.org.hibernate.SQL", "WARN");
+            properties.put("indexing-settings.crawl-workers", options.getOrDefault("crawl-workers", "8"));
+            properties.put("indexing-settings.sites[0].url", site.url());
+            properties.put("indexing-settings.sites[0].name", "Synthetic");
+            properties.put("indexing-settings.sites[0].requests-per-second", options.getOrDefault("rps", "1000"));
+
+            String[] applicationArgs = properties.entrySet().stream()
+                    .map(property -> "--" + property.getKey() + "=" + property.getValue())
+                    .toArray(String[]::new);
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(SearchEngineApplication.class)
+                    .web(WebApplicationType.NONE)
+                    .run(applicationArgs)) {
+                run(context, site, settings);
+            }
+        } finally {
+            if (postgres != null) {
+                postgres.close();
+            }
+        }
+    }
+
+    private static void run(ConfigurableApplicationContext context, SyntheticSite site, SyntheticSite.Settings settings)
+            throws InterruptedException {
+        IndexingService indexingService = context.getBean(IndexingService.class);
+        MeterRegistry registry = context.getBean(MeterRegistry.class);
+        List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans().stream()
+                .filter(pool -> pool.getType() == MemoryType.HEAP)
+                .toList();
+
+        System.gc();
+        heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+        long writesBefore = writes(registry);
+        long start = System.nanoTime();
+        indexingService.startIndexing(false);
+        while (indexingService.isIndexing()) {
+            Thread.sleep(100);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long pages = context.getBean(StatisticsService.class).getStatistics()
+                .getStatistics().getTotal().getPages();
+        long writes = writes(registry) - writesBefore;
+        long peakHeap = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+        Timer writeTimer = registry.find("indexing.db.write").timer();
+
+        System.out.printf("Site: %s, %d pages (%d reachable), fan-out %d, depth %d, %d bytes, %d ms latency, %.1f%% errors%n",
+                site.url(), settings.pages(), site.reachablePages(), settings.fanOut(), settings.depth(),
+                settings.pageSize(), settings.latencyMs(), settings.errorRate() * 100);
+        System.out.printf("Crawl time:        %.2f s%n", seconds);
+        System.out.printf("Pages stored:      %d (%.1f pages/s)%n", pages, pages / seconds);
+        System.out.printf("Index writes:      %d (%.1f writes/s, mean %.2f ms)%n", writes, writes / seconds,
+                writeTimer == null ? 0 : writeTimer.mean(TimeUnit.MILLISECONDS));
+        System.out.printf("Peak heap:         %.1f MB%n", peakHeap / (1024.0 * 1024.0));
+    }
+
+    private static long writes(MeterRegistry registry) {
+        Timer timer = registry.find("indexing.db.write").timer();
+        return timer == null ? 0 : timer.count();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            options.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,159 @@
+package ru.skillbox.search_engine.harness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Сгенерированный сайт на встроенном HTTP-сервере.
+ * Страница /p{n}.html ссылается на fanOut дочерних страниц дерева (пока не достигнута глубина depth)
+ * и на две случайные страницы, поэтому обходчик встречает и новые, и уже посещённые ссылки.
+ * Содержимое, ссылки и ошибочные страницы определяются номером страницы и seed и одинаковы во всех запусках.
+ */
+class SyntheticSite implements AutoCloseable {
+    private static final String[] WORDS = {
+            "доставка", "магазин", "телефон", "смартфон", "экран", "аккумулятор", "камера", "зарядка",
+            "покупатель", "заказ", "оплата", "курьер", "москва", "склад", "цена", "скидка",
+            "гарантия", "ремонт", "наушники", "ноутбук", "планшет", "часы", "батарея", "корпус",
+            "delivery", "store", "phone", "screen", "battery", "camera", "charger", "order",
+            "payment", "courier", "warehouse", "price", "discount", "warranty", "laptop", "tablet"
+    };
+
+    private final Settings settings;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    SyntheticSite(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    String url() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * Число страниц, достижимых по ссылкам с главной.
+     */
+    int reachablePages() {
+        int reachable = 0;
+        for (int page = 0; page < settings.pages(); page++) {
+            if (depthOf(page) <= settings.depth()) {
+                reachable++;
+            }
+        }
+        return reachable;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.close();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            int page = pageNumber(exchange.getRequestURI().getPath());
+            if (settings.latencyMs() > 0) {
+                Thread.sleep(settings.latencyMs());
+            }
+            if (page < 0 || page >= settings.pages()) {
+                send(exchange, 404, "<html><body>Not found</body></html>");
+            } else if (page != 0 && new SplittableRandom(settings.seed() ^ page).nextDouble() < settings.errorRate()) {
+                send(exchange, 500, "<html><body>Internal error</body></html>");
+            } else {
+                send(exchange, 200, render(page));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String render(int page) {
+        SplittableRandom random = new SplittableRandom(settings.seed() * 31 + page);
+        StringBuilder html = new StringBuilder(settings.pageSize() + 512);
+        html.append("<html><head><title>Страница ").append(page).append("</title></head><body><nav>");
+        if (depthOf(page) < settings.depth()) {
+            for (int i = 1; i <= settings.fanOut(); i++) {
+                long child = (long) page * settings.fanOut() + i;
+                if (child < settings.pages()) {
+                    link(html, (int) child);
+                }
+            }
+        }
+        link(html, random.nextInt(Math.max(1, page + 1)));
+        link(html, random.nextInt(settings.pages()));
+        html.append("</nav><p>");
+        while (html.length() < settings.pageSize()) {
+            html.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+        }
+        return html.append("</p></body></html>").toString();
+    }
+
+    private int depthOf(int page) {
+        int depth = 0;
+        long first = 0;
+        long width = 1;
+        while (page >= first + width) {
+            first += width;
+            width *= settings.fanOut();
+            depth++;
+        }
+        return depth;
+    }
+
+    private static void link(StringBuilder html, int page) {
+        html.append("<a href=\"").append(page == 0 ? "/" : "/p" + page + ".html").append("\">")
+                .append(page).append("</a> ");
+    }
+
+    private static int pageNumber(String path) {
+        if (path.equals("/")) {
+            return 0;
+        }
+        if (path.startsWith("/p") && path.endsWith(".html")) {
+            try {
+                return Integer.parseInt(path.substring(2, path.length() - 5));
+            } catch (NumberFormatException ignored) {
+                // не страница сайта
+            }
+        }
+        return -1;
+    }
+
+    private static void send(HttpExchange exchange, int code, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * @param pages      число страниц сайта
+     * @param fanOut     число дочерних ссылок на странице
+     * @param depth      глубина дерева ссылок от главной страницы
+     * @param pageSize   примерный размер страницы в байтах
+     * @param latencyMs  задержка ответа сервера
+     * @param errorRate  доля страниц, отвечающих 500
+     * @param seed       начальное значение генератора
+     */
+    record Settings(int pages, int fanOut, int depth, int pageSize, int latencyMs, double errorRate, long seed) {
+        Settings {
+            if (fanOut < 1) {
+                throw new IllegalArgumentException("--fan-out must be at least 1, got: " + fanOut);
+            }
+        }
+    }
+}
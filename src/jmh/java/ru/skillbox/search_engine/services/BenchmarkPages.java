@@ -0,0 +1,29 @@
+package ru.skillbox.search_engine.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Образцы страниц для бенчмарков: карточка товара интернет-магазина на русском и английском.
+ */
+final class BenchmarkPages {
+
+    private BenchmarkPages() {
+    }
+
+    /**
+     * @param language ru или en
+     */
+    static String html(String language) {
+        try (InputStream in = BenchmarkPages.class.getResourceAsStream("/benchmark/" + language + ".html")) {
+            if (in == null) {
+                throw new IllegalArgumentException("No benchmark page for language: " + language);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.skillbox.search_engine.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.jsoup.Jsoup;
+import org.openjdk.jmh.annotations.*;
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Лемматизация страницы целиком: разбор HTML, разбиение на слова, морфология и подсчёт лемм.
+ * Размер кэша 0 означает, что каждое слово проходит через морфологию, как при первой встрече.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class LemmatizerBenchmark {
+
+    @Param({"ru", "en"})
+    private String language;
+
+    @Param({"0", "100000"})
+    private long cacheSize;
+
+    private LemmaService lemmaService;
+    private String html;
+    private String text;
+
+    @Setup
+    public void setUp() throws IOException {
+        MeterRegistry registry = new SimpleMeterRegistry();
+        lemmaService = new LemmaService(null, null, null, null, null,
+                new EngineMetrics(registry), new WordFormCache(registry, cacheSize),
+                new RussianLuceneMorphology(), new EnglishLuceneMorphology());
+        html = BenchmarkPages.html(language);
+        text = Jsoup.parse(html).text();
+    }
+
+    @Benchmark
+    public LemmaCounts getLemmasFromText() {
+        return lemmaService.getLemmasFromText(html);
+    }
+
+    @Benchmark
+    public LemmaCounts lemmatize() {
+        return lemmaService.lemmatize(text);
+    }
+}
@@ -0,0 +1,87 @@
+package ru.skillbox.search_engine.services;
+
+import org.openjdk.jmh.annotations.*;
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ранжирование по синтетическому корпусу: пересечение списков страниц и выбор лучших для окна выдачи.
+ * Корпус лежит в таблице в памяти ({@code memory}) или в сегменте на диске ({@code segment}).
+ * Частоты лемм в корпусе убывают от первой к последней, как в естественном тексте;
+ * генератор случайных чисел инициализирован постоянным значением, поэтому корпус одинаков во всех запусках.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class SearchBenchmark {
+    private static final int SITE_ID = 1;
+    private static final int VOCABULARY = 20_000;
+    private static final int LEMMAS_PER_PAGE = 150;
+    private static final int WINDOW = 20;
+    private static final Map<String, List<String>> QUERIES = Map.of(
+            "frequent", List.of("lemma0", "lemma1"),
+            "mixed", List.of("lemma2", "lemma300", "lemma40"),
+            "rare", List.of("lemma4000", "lemma7"));
+
+    @Param({"10000", "100000"})
+    private int pages;
+
+    @Param({"frequent", "mixed", "rare"})
+    private String query;
+
+    @Param({"memory", "segment"})
+    private String storage;
+
+    private Path directory;
+    private InvertedIndex invertedIndex;
+    private List<String> lemmas;
+
+    @Setup
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("search-benchmark");
+        invertedIndex = new InvertedIndex(null, null, new SegmentStore(directory.toString(), Integer.MAX_VALUE, 8));
+        Random random = new Random(42);
+        for (int pageId = 1; pageId <= pages; pageId++) {
+            LemmaCounts pageLemmas = new LemmaCounts(LEMMAS_PER_PAGE);
+            for (int i = 0; i < LEMMAS_PER_PAGE; i++) {
+                int lemma = (int) (VOCABULARY * Math.pow(random.nextDouble(), 3));
+                pageLemmas.increment("lemma" + lemma);
+            }
+            invertedIndex.addPage(SITE_ID, pageId, pageLemmas);
+        }
+        if (storage.equals("segment")) {
+            invertedIndex.flush(SITE_ID).join();
+        }
+        lemmas = QUERIES.get(query);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, InterruptedException {
+        invertedIndex.close();
+        try (var files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Benchmark
+    public ScoredPages match() {
+        return invertedIndex.match(SITE_ID, lemmas);
+    }
+
+    @Benchmark
+    public int[] matchAndSelectTop() {
+        ScoredPages scored = invertedIndex.match(SITE_ID, lemmas);
+        return SearchService.selectTop(scored, WINDOW);
+    }
+}
@@ -0,0 +1,101 @@
+package ru.skillbox.search_engine.services;
+
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.skillbox.search_engine.util.HtmlExtractor;
+import ru.skillbox.search_engine.util.WordTokenizer;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Отдельные шаги обработки текста: извлечение текста из HTML, разбиение на слова, морфологические вызовы
+ * (определение части речи для отсева служебных слов и нормальная форма) и построение сниппета.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TextProcessingBenchmark {
+
+    @Param({"ru", "en"})
+    private String language;
+
+    private String html;
+    private String text;
+    private List<String> words;
+    private LuceneMorphology morphology;
+    private Set<String> snippetLemmas;
+
+    @Setup
+    public void setUp() throws IOException {
+        html = BenchmarkPages.html(language);
+        text = Jsoup.parse(html).text();
+        WordTokenizer.Script script;
+        if (language.equals("ru")) {
+            morphology = new RussianLuceneMorphology();
+            script = WordTokenizer.Script.CYRILLIC;
+            snippetLemmas = Set.of("аккумулятор", "доставка");
+        } else {
+            morphology = new EnglishLuceneMorphology();
+            script = WordTokenizer.Script.LATIN;
+            snippetLemmas = Set.of("battery", "delivery");
+        }
+        words = new ArrayList<>();
+        WordTokenizer.tokenize(text, (word, wordScript) -> {
+            if (wordScript == script) {
+                words.add(word);
+            }
+        });
+    }
+
+    /**
+     * Разбор в полное дерево, как до потокового извлечения.
+     */
+    @Benchmark
+    public void parseDocument(Blackhole blackhole) {
+        Document doc = Jsoup.parse(html, "http://localhost/");
+        blackhole.consume(doc.title());
+        blackhole.consume(doc.text());
+        blackhole.consume(doc.select("a[href]").eachAttr("abs:href"));
+    }
+
+    @Benchmark
+    public HtmlExtractor.Extract extract() {
+        return HtmlExtractor.extract(html, "http://localhost/");
+    }
+
+    @Benchmark
+    public void tokenize(Blackhole blackhole) {
+        WordTokenizer.tokenize(text, (word, script) -> blackhole.consume(word));
+    }
+
+    @Benchmark
+    public void morphInfo(Blackhole blackhole) {
+        for (String word : words) {
+            blackhole.consume(morphology.getMorphInfo(word));
+        }
+    }
+
+    @Benchmark
+    public void normalForms(Blackhole blackhole) {
+        for (String word : words) {
+            blackhole.consume(morphology.getNormalForms(word));
+        }
+    }
+
+    @Benchmark
+    public String snippet() {
+        return SearchService.generateSnippet(text, snippetLemmas);
+    }
+}
@@ -7,6 +7,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
 import java.io.IOException;
+import java.net.http.HttpClient;
 
 @Configuration
 public class AppConfig {
@@ -20,4 +21,17 @@ public class AppConfig {
     public LuceneMorphology englishLuceneMorphology() throws IOException {
         return new EnglishLuceneMorphology();
     }
+
+    /**
+     * Общий клиент обходчика: соединения с хостом переиспользуются между страницами,
+     * по HTTPS согласуется HTTP/2.
+     */
+    @Bean
+    public HttpClient crawlerHttpClient(CrawlerHttpSettings settings) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(settings.getConnectTimeout())
+                .build();
+    }
 }
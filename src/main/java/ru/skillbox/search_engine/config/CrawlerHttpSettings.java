@@ -0,0 +1,39 @@
+package ru.skillbox.search_engine.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Параметры HTTP-клиента обходчика.
+ */
+@Component
+@ConfigurationProperties(prefix = "crawler-http")
+@Data
+public class CrawlerHttpSettings {
+    private String userAgent = "HeliontSearchBot";
+    private String referrer = "http://www.google.com";
+    private Duration connectTimeout = Duration.ofSeconds(10);
+    /**
+     * Время ожидания заголовков ответа после отправки запроса и, отдельно, время на чтение тела.
+     */
+    private Duration readTimeout = Duration.ofSeconds(10);
+    /**
+     * Тело ответа после распаковки обрезается до этого размера.
+     */
+    private DataSize maxBodySize = DataSize.ofMegabytes(2);
+    private List<String> contentTypes = List.of("text/html", "application/xhtml+xml");
+    /**
+     * Ссылки с такими расширениями не загружаются вовсе.
+     */
+    private List<String> skippedExtensions = List.of(
+            "jpg", "jpeg", "png", "gif", "webp", "svg", "ico", "bmp", "tif", "tiff",
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "odt",
+            "zip", "rar", "7z", "gz", "tar", "exe", "dmg", "iso",
+            "mp3", "mp4", "avi", "mov", "mkv", "webm", "wav", "ogg",
+            "css", "js", "json", "xml", "woff", "woff2", "ttf", "eot");
+}
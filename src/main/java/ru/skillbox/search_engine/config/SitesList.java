@@ -3,17 +3,27 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.List;
 
 @Component
 @ConfigurationProperties(prefix = "indexing-settings")
 @Data
 public class SitesList {
+    public static final double DEFAULT_REQUESTS_PER_SECOND = 2.0;
+
     private List<Site> sites;
+    private int crawlWorkers = 8;
+    private int parseWorkers = Runtime.getRuntime().availableProcessors();
+    private int parseQueueCapacity = 64;
+    private int persistWorkers = 4;
+    private int persistQueueCapacity = 64;
+    private Duration checkpointInterval = Duration.ofSeconds(5);
 
     @Data
     public static class Site {
         private String url;
         private String name;
+        private double requestsPerSecond = DEFAULT_REQUESTS_PER_SECOND;
     }
 }
\ No newline at end of file
@@ -3,15 +3,13 @@ package ru.skillbox.search_engine.controller;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import ru.skillbox.search_engine.dto.SearchResult;
+import ru.skillbox.search_engine.dto.SearchResults;
 import ru.skillbox.search_engine.dto.statistics.StatisticsResponse;
 import ru.skillbox.search_engine.services.IndexingService;
 import ru.skillbox.search_engine.services.SearchService;
 import ru.skillbox.search_engine.services.StatisticsService;
 
-import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ForkJoinPool;
 
 @RestController
 @RequestMapping("/api")
@@ -20,36 +18,38 @@ public class ApiController {
     private final StatisticsService statisticsService;
     private final IndexingService indexingService;
     private final SearchService searchService;
-    private volatile boolean isIndexing = false;
 
     @GetMapping("/statistics")
     public ResponseEntity<StatisticsResponse> statistics() {
         return ResponseEntity.ok(statisticsService.getStatistics());
     }
 
+    @GetMapping("/pipelineStatistics")
+    public ResponseEntity<Map<String, Object>> pipelineStatistics() {
+        return ResponseEntity.ok(Map.of("result", true, "stages", indexingService.getPipelineStatistics()));
+    }
+
+    @GetMapping("/cacheStatistics")
+    public ResponseEntity<Map<String, Object>> cacheStatistics() {
+        return ResponseEntity.ok(Map.of("result", true, "caches", searchService.getCacheStatistics()));
+    }
+
     @GetMapping("/startIndexing")
-    public ResponseEntity<Map<String, Object>> startIndexing() {
-        if (isIndexing) {
-            return ResponseEntity.badRequest().body(Map.of("result", false, "error", "Индексация уже запущена"));
-        }
-        isIndexing = true;
-        ForkJoinPool.commonPool().submit(() -> {
-            try {
-                indexingService.startIndexing();
-            } finally {
-                isIndexing = false;
-            }
-        });
-        return ResponseEntity.ok(Map.of("result", true));
+    public ResponseEntity<Map<String, Object>> startIndexing(@RequestParam(defaultValue = "false") boolean incremental) {
+        return launch(() -> indexingService.startIndexing(incremental));
+    }
+
+    @GetMapping("/resumeIndexing")
+    public ResponseEntity<Map<String, Object>> resumeIndexing() {
+        return launch(indexingService::resumeIndexing);
     }
 
     @GetMapping("/stopIndexing")
     public ResponseEntity<Map<String, Object>> stopIndexing() {
-        if (!isIndexing) {
+        if (!indexingService.isIndexing()) {
             return ResponseEntity.badRequest().body(Map.of("result", false, "error", "Индексация не запущена"));
         }
         indexingService.stopIndexing();
-        isIndexing = false;
         return ResponseEntity.ok(Map.of("result", true));
     }
 
@@ -70,11 +70,11 @@ public class ApiController {
             @RequestParam(defaultValue = "0") int offset,
             @RequestParam(defaultValue = "20") int limit) {
         try {
-            List<SearchResult> results = searchService.search(query, site, offset, limit);
+            SearchResults results = searchService.search(query, site, offset, limit);
             return ResponseEntity.ok(Map.of(
                     "result", true,
-                    "count", results.size(),
-                    "data", results
+                    "count", results.getCount(),
+                    "data", results.getData()
             ));
         } catch (Exception e) {
             return ResponseEntity.badRequest().body(Map.of(
@@ -83,4 +83,19 @@ public class ApiController {
             ));
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Запускает обход: сайты обходятся в фоновых потоках, ответ возвращается сразу.
+     */
+    private ResponseEntity<Map<String, Object>> launch(Runnable start) {
+        if (indexingService.isIndexing()) {
+            return ResponseEntity.badRequest().body(Map.of("result", false, "error", "Индексация уже запущена"));
+        }
+        try {
+            start.run();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("result", false, "error", "Индексация уже запущена"));
+        }
+        return ResponseEntity.ok(Map.of("result", true));
+    }
+}
@@ -0,0 +1,21 @@
+package ru.skillbox.search_engine.dto;
+
+import lombok.Data;
+
+import java.util.Collections;
+import java.util.List;
+
+@Data
+public class SearchResults {
+    private int count;
+    private List<SearchResult> data;
+
+    public SearchResults(int count, List<SearchResult> data) {
+        this.count = count;
+        this.data = data;
+    }
+
+    public static SearchResults empty() {
+        return new SearchResults(0, Collections.emptyList());
+    }
+}
@@ -0,0 +1,13 @@
+package ru.skillbox.search_engine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class CacheStatistics {
+    private String name;
+    private long size;
+    private long hits;
+    private long misses;
+    private double hitRate;
+    private long evictions;
+}
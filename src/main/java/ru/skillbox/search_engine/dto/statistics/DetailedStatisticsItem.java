@@ -11,4 +11,8 @@ public class DetailedStatisticsItem {
     private String error;
     private long pages;
     private long lemmas;
+    private long fetched;
+    private long failed;
+    private int queued;
+    private double pagesPerSecond;
 }
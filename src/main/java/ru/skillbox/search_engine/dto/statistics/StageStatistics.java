@@ -0,0 +1,14 @@
+package ru.skillbox.search_engine.dto.statistics;
+
+import lombok.Data;
+
+@Data
+public class StageStatistics {
+    private String name;
+    private int workers;
+    private int queueDepth;
+    private int queueCapacity;
+    private long processed;
+    private long failed;
+    private double throughput;
+}
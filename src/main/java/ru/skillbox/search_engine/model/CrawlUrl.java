@@ -0,0 +1,27 @@
+package ru.skillbox.search_engine.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * URL, найденный при обходе сайта. Незавершённые URL образуют очередь обхода,
+ * все вместе — множество посещённых; по ним обход продолжается после остановки или перезапуска.
+ */
+@Entity
+@Table(name = "crawl_url", uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "url"}))
+@Data
+public class CrawlUrl {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private int id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "site_id", nullable = false)
+    private Site site;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String url;
+
+    @Column(nullable = false)
+    private boolean done;
+}
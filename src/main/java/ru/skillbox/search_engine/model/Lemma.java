@@ -5,13 +5,14 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "lemma"}))
 @Data
 public class Lemma {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private int id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;
 
@@ -4,14 +4,15 @@ import jakarta.persistence.*;
 import lombok.Data;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(columnNames = {"site_id", "path"}))
 @Data
 public class Page {
     @Id
     @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "page_seq")
-    @SequenceGenerator(name = "page_seq", sequenceName = "page_sequence", allocationSize = 1)
+    @SequenceGenerator(name = "page_seq", sequenceName = "page_sequence", allocationSize = 50)
     private int id;
 
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "site_id", nullable = false)
     private Site site;
 
@@ -21,6 +22,18 @@ public class Page {
     @Column(nullable = false)
     private int code;
 
-    @Column(columnDefinition = "TEXT", nullable = false)
-    private String content;
+    @Column(columnDefinition = "TEXT")
+    private String title;
+
+    @Column(columnDefinition = "TEXT")
+    private String text;
+
+    @Column(name = "etag")
+    private String etag;
+
+    @Column(name = "last_modified")
+    private String lastModified;
+
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 }
\ No newline at end of file
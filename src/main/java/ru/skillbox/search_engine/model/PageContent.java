@@ -0,0 +1,20 @@
+package ru.skillbox.search_engine.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+/**
+ * Исходный HTML страницы. Хранится отдельно от {@link Page}, чтобы загрузка страниц
+ * для поиска и статистики не тянула содержимое в память.
+ */
+@Entity
+@Table(name = "page_content")
+@Data
+public class PageContent {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String content;
+}
@@ -25,4 +25,12 @@ public class Site {
 
     @Column(nullable = false)
     private String name;
+
+    /**
+     * Поколение, по которому выполняется поиск. У каждого URL активно одно поколение;
+     * полный обход пишет в новое неактивное, и после завершения они переключаются
+     * в {@link ru.skillbox.search_engine.repositories.SiteGenerationRepository}.
+     */
+    @Column(nullable = false, updatable = false, columnDefinition = "boolean default true")
+    private boolean active;
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package ru.skillbox.search_engine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Контрольные точки обхода в таблице crawl_url: найденные URL и отметки о завершённых страницах.
+ */
+@Repository
+@RequiredArgsConstructor
+public class CrawlCheckpointRepository {
+    private static final String INSERT_URLS_SQL = """
+            INSERT INTO crawl_url (site_id, url, done)
+            SELECT ?, u, false FROM unnest(?::text[]) AS u
+            ON CONFLICT (site_id, url) DO NOTHING""";
+
+    private static final String MARK_DONE_SQL = """
+            UPDATE crawl_url SET done = true
+            WHERE site_id = ? AND url = ANY(?::text[])""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Записывает новые URL и отмечает завершённые одной транзакцией.
+     */
+    @Transactional
+    public void save(int siteId, Collection<String> discovered, Collection<String> completed) {
+        if (!discovered.isEmpty()) {
+            updateWithArray(INSERT_URLS_SQL, siteId, discovered);
+        }
+        if (!completed.isEmpty()) {
+            updateWithArray(MARK_DONE_SQL, siteId, completed);
+        }
+    }
+
+    public boolean hasPending(int siteId) {
+        Boolean pending = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM crawl_url WHERE site_id = ? AND NOT done)", Boolean.class, siteId);
+        return Boolean.TRUE.equals(pending);
+    }
+
+    /**
+     * Загружает сохранённое состояние обхода сайта.
+     */
+    public Checkpoint load(int siteId) {
+        List<String> visited = new ArrayList<>();
+        List<String> queued = new ArrayList<>();
+        jdbcTemplate.query("SELECT url, done FROM crawl_url WHERE site_id = ?", rs -> {
+            String url = rs.getString("url");
+            visited.add(url);
+            if (!rs.getBoolean("done")) {
+                queued.add(url);
+            }
+        }, siteId);
+        return new Checkpoint(visited, queued);
+    }
+
+    public void deleteBySite(int siteId) {
+        jdbcTemplate.update("DELETE FROM crawl_url WHERE site_id = ?", siteId);
+    }
+
+    /**
+     * Удаляет контрольные точки всех прежних обходов сайта с этим адресом.
+     */
+    public void deleteBySiteUrl(String url) {
+        jdbcTemplate.update("DELETE FROM crawl_url WHERE site_id IN (SELECT id FROM site WHERE url = ?)", url);
+    }
+
+    private void updateWithArray(String sql, int siteId, Collection<String> urls) {
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setInt(1, siteId);
+            ps.setArray(2, con.createArrayOf("text", urls.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * @param visited все найденные URL
+     * @param queued  URL, страницы которых ещё не записаны
+     */
+    public record Checkpoint(List<String> visited, List<String> queued) {
+    }
+}
@@ -0,0 +1,181 @@
+package ru.skillbox.search_engine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.postgresql.jdbc.PgConnection;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Пакетная запись лемм и индексов страницы: постоянное число запросов на страницу
+ * вместо нескольких запросов на каждую лемму.
+ */
+@Repository
+@RequiredArgsConstructor
+public class IndexJdbcRepository {
+    private static final String DELETE_PAGE_INDEX_SQL = """
+            WITH removed AS (DELETE FROM index_table WHERE site_id = ? AND page_id = ? RETURNING lemma_id)
+            SELECT lemma.id, lemma.lemma FROM removed JOIN lemma ON lemma.id = removed.lemma_id""";
+
+    private static final String SELECT_LEMMA_IDS_SQL = """
+            SELECT id, lemma, false AS inserted FROM lemma WHERE site_id = ? AND lemma = ANY(?::text[])""";
+
+    private static final String FIND_OR_INSERT_LEMMAS_SQL = """
+            WITH existing AS (
+                SELECT id, lemma FROM lemma WHERE site_id = ? AND lemma = ANY(?::text[])
+            ), inserted AS (
+                INSERT INTO lemma (site_id, lemma, frequency)
+                SELECT ?, l, 0 FROM unnest(?::text[]) AS l
+                WHERE l NOT IN (SELECT lemma FROM existing) ORDER BY l
+                ON CONFLICT (site_id, lemma) DO NOTHING
+                RETURNING id, lemma
+            )
+            SELECT id, lemma, false AS inserted FROM existing
+            UNION ALL
+            SELECT id, lemma, true FROM inserted""";
+
+    private static final String ADD_FREQUENCIES_SQL = """
+            UPDATE lemma SET frequency = lemma.frequency + d.delta
+            FROM unnest(?::int[], ?::int[]) AS d(id, delta)
+            WHERE lemma.id = d.id""";
+
+    private static final String RECOUNT_FREQUENCIES_SQL = """
+            UPDATE lemma SET frequency = counted.frequency
+            FROM (SELECT lemma.id, count(index_table.lemma_id) AS frequency
+                  FROM lemma LEFT JOIN index_table ON index_table.lemma_id = lemma.id
+                  GROUP BY lemma.id) AS counted
+            WHERE lemma.id = counted.id AND lemma.frequency <> counted.frequency""";
+
+    private static final String INSERT_INDEXES_SQL = """
+            INSERT INTO index_table (site_id, page_id, lemma_id, rank)
+            SELECT ?, ?, unnest(?::int[]), unnest(?::real[])""";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Удаляет индекс страницы. Частоты лемм не меняются: их уменьшает {@code LemmaFrequencies}.
+     *
+     * @return леммы, которые были проиндексированы на странице
+     */
+    public PageLemmas deletePageIndex(int siteId, int pageId) {
+        List<Integer> ids = new ArrayList<>();
+        List<String> lemmas = new ArrayList<>();
+        jdbcTemplate.query(DELETE_PAGE_INDEX_SQL, (RowCallbackHandler) rs -> {
+            ids.add(rs.getInt("id"));
+            lemmas.add(rs.getString("lemma"));
+        }, siteId, pageId);
+        return new PageLemmas(ids.stream().mapToInt(Integer::intValue).toArray(), lemmas);
+    }
+
+    public record PageLemmas(int[] ids, List<String> lemmas) {
+    }
+
+    /**
+     * Находит id лемм сайта и вставляет недостающие леммы с нулевой частотой.
+     * Существующие строки только читаются, поэтому параллельные страницы сайта не ждут блокировок
+     * частых лемм. Лемму, которую одновременно вставила другая страница, находит повторный запрос:
+     * при READ COMMITTED он видит её после фиксации.
+     *
+     * @return id лемм и число впервые добавленных лемм
+     */
+    public LemmaIds findOrInsertLemmas(int siteId, LemmaCounts lemmas) {
+        int[] ids = new int[lemmas.size()];
+        int[] counts = collectIds(con -> {
+            Array names = con.createArrayOf("text", lemmas.lemmas().toArray());
+            PreparedStatement ps = con.prepareStatement(FIND_OR_INSERT_LEMMAS_SQL);
+            ps.setInt(1, siteId);
+            ps.setArray(2, names);
+            ps.setInt(3, siteId);
+            ps.setArray(4, names);
+            return ps;
+        }, lemmas, ids);
+        if (counts[0] < ids.length) {
+            // Остальные леммы одновременно вставила другая страница сайта
+            List<String> missing = new ArrayList<>();
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == 0) {
+                    missing.add(lemmas.lemma(i));
+                }
+            }
+            collectIds(con -> {
+                PreparedStatement ps = con.prepareStatement(SELECT_LEMMA_IDS_SQL);
+                ps.setInt(1, siteId);
+                ps.setArray(2, con.createArrayOf("text", missing.toArray()));
+                return ps;
+            }, lemmas, ids);
+        }
+        return new LemmaIds(ids, counts[1]);
+    }
+
+    /**
+     * @param ids id лемм в порядке номеров {@link LemmaCounts}
+     */
+    public record LemmaIds(int[] ids, int inserted) {
+    }
+
+    /**
+     * Записывает найденные id в массив по номерам лемм.
+     *
+     * @return число найденных лемм и число вставленных из них
+     */
+    private int[] collectIds(PreparedStatementCreator statement, LemmaCounts lemmas, int[] ids) {
+        int[] counts = new int[2];
+        jdbcTemplate.query(statement, (RowCallbackHandler) rs -> {
+            ids[lemmas.indexOf(rs.getString("lemma"))] = rs.getInt("id");
+            counts[0]++;
+            if (rs.getBoolean("inserted")) {
+                counts[1]++;
+            }
+        });
+        return counts;
+    }
+
+    /**
+     * Прибавляет накопленные изменения частот одним запросом.
+     */
+    public void addFrequencies(int[] lemmaIds, int[] deltas) {
+        jdbcTemplate.update(con -> {
+            PgConnection pg = con.unwrap(PgConnection.class);
+            PreparedStatement ps = con.prepareStatement(ADD_FREQUENCIES_SQL);
+            ps.setArray(1, pg.createArrayOf("int4", lemmaIds));
+            ps.setArray(2, pg.createArrayOf("int4", deltas));
+            return ps;
+        });
+    }
+
+    /**
+     * Пересчитывает частоты всех лемм по index_table.
+     *
+     * @return число исправленных лемм
+     */
+    public int recountFrequencies() {
+        return jdbcTemplate.update(RECOUNT_FREQUENCIES_SQL);
+    }
+
+    /**
+     * Вставляет все записи индекса страницы одним запросом.
+     * Массивы передаются драйверу PostgreSQL без упаковки в Integer и Float.
+     */
+    public void insertIndexes(int siteId, int pageId, LemmaCounts ranks, int[] lemmaIds) {
+        float[] values = new float[ranks.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = ranks.count(i);
+        }
+        jdbcTemplate.update(con -> {
+            PgConnection pg = con.unwrap(PgConnection.class);
+            PreparedStatement ps = con.prepareStatement(INSERT_INDEXES_SQL);
+            ps.setInt(1, siteId);
+            ps.setInt(2, pageId);
+            ps.setArray(3, pg.createArrayOf("int4", lemmaIds));
+            ps.setArray(4, pg.createArrayOf("float4", values));
+            return ps;
+        });
+    }
+}
@@ -1,16 +1,38 @@
 package ru.skillbox.search_engine.repositories;
 
+import jakarta.persistence.QueryHint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import ru.skillbox.search_engine.model.Index;
 import ru.skillbox.search_engine.model.Lemma;
 import ru.skillbox.search_engine.model.Page;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface IndexRepository extends JpaRepository<Index, Integer> {
 
-    List<Index> findByLemma(Lemma lemma);
+    @Query("select i.page.id as pageId, i.rank as rank from Index i where i.lemma = :lemma")
+    List<PageRank> findByLemma(Lemma lemma);
     Optional<Index> findByPageAndLemma(Page page, Lemma lemma);
     boolean existsByPageAndLemma(Page page, Lemma lemma);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "10000"))
+    @Query("select l.site.id as siteId, l.lemma as lemma, i.page.id as pageId, i.rank as rank " +
+            "from Index i join i.lemma l order by i.page.id")
+    Stream<PostingEntry> streamAllPostings();
+
+    interface PageRank {
+        int getPageId();
+        float getRank();
+    }
+
+    interface PostingEntry {
+        int getSiteId();
+        String getLemma();
+        int getPageId();
+        float getRank();
+    }
 }
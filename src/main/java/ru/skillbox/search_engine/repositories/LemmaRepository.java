@@ -1,9 +1,11 @@
 package ru.skillbox.search_engine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import ru.skillbox.search_engine.model.Lemma;
 import ru.skillbox.search_engine.model.Site;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
@@ -11,4 +13,7 @@ public interface LemmaRepository extends JpaRepository<Lemma, Integer> {
     Optional<Lemma> findByLemmaAndSite(String lemma, Site site);
     boolean existsByLemmaAndSite(String lemma, Site site);
     long countBySite(Site site);
+
+    @Query("select l.site.id as siteId, count(l) as count from Lemma l group by l.site.id")
+    List<PageRepository.SiteCount> countLemmasBySite();
 }
\ No newline at end of file
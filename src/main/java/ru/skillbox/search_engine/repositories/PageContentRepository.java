@@ -0,0 +1,13 @@
+package ru.skillbox.search_engine.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import ru.skillbox.search_engine.model.PageContent;
+
+import java.util.Optional;
+
+public interface PageContentRepository extends JpaRepository<PageContent, Integer> {
+
+    @Query("select c.content from PageContent c where c.pageId = :pageId")
+    Optional<String> findContentByPageId(int pageId);
+}
@@ -1,11 +1,63 @@
 package ru.skillbox.search_engine.repositories;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.transaction.annotation.Transactional;
 import ru.skillbox.search_engine.model.Page;
 import ru.skillbox.search_engine.model.Site;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface PageRepository extends JpaRepository<Page, Integer> {
     boolean existsByPathAndSite(String path, Site site);
     Page findByPathAndSite(String path, Site site);
     long countBySite(Site site);
+
+    /**
+     * Есть ли у поколения хотя бы одна страница, загруженная без ошибки.
+     */
+    boolean existsBySiteAndCodeLessThan(Site site, int code);
+    List<PageState> findPageStatesBySite(Site site);
+
+    @Query("select p.site.id as siteId, count(p) as count from Page p group by p.site.id")
+    List<SiteCount> countPagesBySite();
+
+    @Query("select p.id as id, p.path as path, p.title as title, p.text as text, s.url as siteUrl " +
+            "from Page p join p.site s where p.id in :ids")
+    List<SearchPage> findSearchPagesByIdIn(Collection<Integer> ids);
+
+    @Transactional
+    @Modifying
+    @Query("update Page p set p.etag = :etag, p.lastModified = :lastModified where p.id = :id")
+    void updateValidators(int id, String etag, String lastModified);
+
+    /**
+     * Состояние ранее загруженной страницы для условных запросов при повторном обходе.
+     */
+    interface PageState {
+        int getId();
+        String getPath();
+        int getCode();
+        String getEtag();
+        String getLastModified();
+        String getContentHash();
+    }
+
+    interface SiteCount {
+        int getSiteId();
+        long getCount();
+    }
+
+    /**
+     * Поля страницы, нужные для выдачи результата поиска, без исходного HTML.
+     */
+    interface SearchPage {
+        int getId();
+        String getPath();
+        String getTitle();
+        String getText();
+        String getSiteUrl();
+    }
 }
@@ -0,0 +1,117 @@
+package ru.skillbox.search_engine.repositories;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Поколения индекса сайта: каждая строка site — отдельное поколение со своими страницами и леммами.
+ * Переключение активного поколения и удаление старых выполняются групповыми запросами.
+ */
+@Repository
+@RequiredArgsConstructor
+public class SiteGenerationRepository {
+    private static final List<String> DELETE_GENERATIONS_SQL = List.of(
+            "DELETE FROM page_content c USING page p WHERE c.page_id = p.id AND p.site_id = ANY(?::int[])",
+            "DELETE FROM page WHERE site_id = ANY(?::int[])",
+            "DELETE FROM lemma WHERE site_id = ANY(?::int[])",
+            "DELETE FROM crawl_url WHERE site_id = ANY(?::int[])",
+            "DELETE FROM site WHERE id = ANY(?::int[])");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    /**
+     * Не synchronized: ожидание отсоединения внутри монитора заняло бы поток-носитель виртуального потока,
+     * и транзакция другого сайта, которую ждёт отсоединение, не смогла бы завершиться.
+     */
+    private final Lock partitionLock = new ReentrantLock();
+
+    public List<Integer> findIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM site", Integer.class);
+    }
+
+    public List<Integer> findActiveIds() {
+        return jdbcTemplate.queryForList("SELECT id FROM site WHERE active", Integer.class);
+    }
+
+    public boolean hasActive(String url) {
+        Boolean active = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM site WHERE url = ? AND active)", Boolean.class, url);
+        return Boolean.TRUE.equals(active);
+    }
+
+    /**
+     * Неактивные поколения сайта — оставшиеся от прерванных полных обходов.
+     */
+    public List<Integer> findInactive(String url) {
+        return jdbcTemplate.queryForList("SELECT id FROM site WHERE url = ? AND NOT active", Integer.class, url);
+    }
+
+    /**
+     * Делает поколение активным, а все остальные поколения того же сайта — неактивными, одним запросом.
+     *
+     * @return id замещённых поколений
+     */
+    @Transactional
+    public List<Integer> activate(int siteId, String url) {
+        List<Integer> replaced = jdbcTemplate.queryForList(
+                "SELECT id FROM site WHERE url = ? AND id <> ? FOR UPDATE", Integer.class, url, siteId);
+        jdbcTemplate.update("UPDATE site SET active = (id = ?) WHERE url = ?", siteId, url);
+        return replaced;
+    }
+
+    /**
+     * Удаляет поколения вместе с их индексом, страницами, леммами и контрольными точками.
+     * Индекс поколения — отдельная секция index_table, она удаляется целиком без построчного DELETE.
+     * Вызывается вне транзакции: секция сначала отсоединяется с CONCURRENTLY, которое не блокирует
+     * запись в секции других сайтов, и лишь затем удаляется. Строки остальных таблиц удаляются
+     * отдельной транзакцией, поэтому блокировки index_table не держатся до её фиксации.
+     */
+    public void delete(Collection<Integer> siteIds) {
+        if (siteIds.isEmpty()) {
+            return;
+        }
+        for (int siteId : siteIds) {
+            dropIndexPartition(siteId);
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            for (String sql : DELETE_GENERATIONS_SQL) {
+                jdbcTemplate.update(con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    ps.setArray(1, con.createArrayOf("integer", siteIds.toArray()));
+                    return ps;
+                });
+            }
+        });
+    }
+
+    /**
+     * Отсоединяет и удаляет секцию index_table поколения. Отсоединение, прерванное на полпути,
+     * оставляет секцию в состоянии ожидания; его завершает FINALIZE. PostgreSQL допускает только одно
+     * незавершённое отсоединение на таблицу, поэтому поколения разных сайтов удаляются по очереди.
+     */
+    private void dropIndexPartition(int siteId) {
+        String partition = "index_table_" + siteId;
+        partitionLock.lock();
+        try {
+            Boolean detachPending = jdbcTemplate.query(
+                    "SELECT inhdetachpending FROM pg_inherits WHERE inhrelid = to_regclass(?) AND inhparent = 'index_table'::regclass",
+                    rs -> rs.next() ? rs.getBoolean(1) : null, partition);
+            if (detachPending != null) {
+                jdbcTemplate.execute("ALTER TABLE index_table DETACH PARTITION " + partition
+                        + (detachPending ? " FINALIZE" : " CONCURRENTLY"));
+            }
+            jdbcTemplate.execute("DROP TABLE IF EXISTS " + partition);
+        } finally {
+            partitionLock.unlock();
+        }
+    }
+}
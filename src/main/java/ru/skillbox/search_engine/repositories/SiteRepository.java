@@ -3,8 +3,12 @@ package ru.skillbox.search_engine.repositories;
 import org.springframework.data.jpa.repository.JpaRepository;
 import ru.skillbox.search_engine.model.Site;
 
+import java.util.List;
 import java.util.Optional;
 
 public interface SiteRepository extends JpaRepository<Site, Integer> {
     Optional<Site> findByUrl(String url);
-}
\ No newline at end of file
+    List<Site> findAllByUrl(String url);
+    Optional<Site> findFirstByUrlOrderByIdDesc(String url);
+    Optional<Site> findFirstByUrlAndActiveTrueOrderByIdDesc(String url);
+}
@@ -0,0 +1,55 @@
+package ru.skillbox.search_engine.services;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import ru.skillbox.search_engine.model.Site;
+import ru.skillbox.search_engine.repositories.PageRepository;
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+/**
+ * Загруженная страница, которая передаётся между этапами конвейера индексации.
+ */
+@Getter
+@RequiredArgsConstructor
+class CrawledPage {
+    private final Site site;
+    private final String url;
+    private final int code;
+    private final String content;
+    private final IndexingPipeline.Listener listener;
+
+    @Setter
+    private LemmaCounts lemmas = new LemmaCounts(1);
+    @Setter
+    private String title;
+    @Setter
+    private String text;
+
+    /**
+     * Состояние страницы после прошлого обхода; null для новой страницы.
+     */
+    @Setter
+    private PageRepository.PageState previous;
+    @Setter
+    private String etag;
+    @Setter
+    private String lastModified;
+    @Setter
+    private String contentHash;
+
+    /**
+     * Содержимое не изменилось: сервер ответил 304 или совпал хэш.
+     * Леммы и индекс такой страницы не перестраиваются.
+     */
+    @Setter
+    private boolean unchanged;
+
+    String getPath() {
+        return url.replace(site.getUrl(), "/");
+    }
+
+    boolean isSuccessful() {
+        return code < 400;
+    }
+}
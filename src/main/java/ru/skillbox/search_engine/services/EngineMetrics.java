@@ -0,0 +1,89 @@
+package ru.skillbox.search_engine.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Таймеры и счётчики горячих участков индексации и поиска.
+ * Метрики доступны через Actuator: /actuator/metrics и /actuator/prometheus.
+ */
+@Component
+public class EngineMetrics {
+    public enum SearchPhase {
+        /** Лемматизация запроса. */
+        LEMMAS,
+        /** Пересечение списков страниц и суммирование рангов. */
+        MATCHING,
+        /** Выбор лучших страниц для окна выдачи. */
+        RANKING,
+        /** Загрузка страниц окна из базы. */
+        PAGES,
+        /** Построение сниппетов. */
+        SNIPPETS
+    }
+
+    private final MeterRegistry registry;
+    private final Timer parse;
+    private final Timer lemmatize;
+    private final Counter tokens;
+    private final Timer indexWrite;
+    private final Timer[] searchPhases;
+
+    public EngineMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.parse = Timer.builder("indexing.parse")
+                .description("Разбор HTML страницы и извлечение ссылок")
+                .register(registry);
+        this.lemmatize = Timer.builder("lemmatizer.lemmatize")
+                .description("Лемматизация текста страницы или запроса")
+                .register(registry);
+        this.tokens = Counter.builder("lemmatizer.tokens")
+                .description("Слова, прошедшие через лемматизатор")
+                .register(registry);
+        this.indexWrite = Timer.builder("indexing.db.write")
+                .description("Запись лемм и индекса страницы в базу")
+                .register(registry);
+        this.searchPhases = new Timer[SearchPhase.values().length];
+        for (SearchPhase phase : SearchPhase.values()) {
+            searchPhases[phase.ordinal()] = Timer.builder("search.phase")
+                    .description("Этапы выполнения поискового запроса")
+                    .tag("phase", phase.name().toLowerCase())
+                    .register(registry);
+        }
+    }
+
+    /**
+     * Время HTTP-запроса без ожидания ограничителя частоты.
+     *
+     * @param status код ответа или "error", если ответ не получен
+     */
+    public void fetch(String host, String status, long nanos) {
+        Timer.builder("crawler.fetch")
+                .description("Загрузка страницы")
+                .tag("host", host)
+                .tag("status", status)
+                .register(registry)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void parsed(long nanos) {
+        parse.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void lemmatized(int tokenCount, long nanos) {
+        tokens.increment(tokenCount);
+        lemmatize.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void indexWritten(long nanos) {
+        indexWrite.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void searchPhase(SearchPhase phase, long nanos) {
+        searchPhases[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,53 @@
+package ru.skillbox.search_engine.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ограничение частоты запросов к каждому хосту по алгоритму token bucket.
+ * Ожидание выполняется через {@link Thread#sleep}, что на виртуальных потоках не занимает потоки платформы.
+ */
+@Component
+public class HostRateLimiter {
+    private final Map<String, TokenBucket> buckets = new ConcurrentHashMap<>();
+
+    /**
+     * Блокирует текущий поток, пока для хоста не появится свободный токен.
+     *
+     * @param requestsPerSecond допустимая частота запросов к хосту
+     */
+    public void acquire(String host, double requestsPerSecond) throws InterruptedException {
+        if (requestsPerSecond <= 0) {
+            return;
+        }
+        long waitNanos = buckets.computeIfAbsent(host, h -> new TokenBucket(requestsPerSecond)).reserve();
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Корзина на один токен: запросы к хосту идут не чаще заданной частоты, без пачек.
+     * Токены могут уходить в минус — это очередь уже зарезервированных запросов.
+     */
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private double tokens = 1;
+        private long lastRefill = System.nanoTime();
+
+        TokenBucket(double requestsPerSecond) {
+            this.tokensPerNano = requestsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        }
+
+        synchronized long reserve() {
+            long now = System.nanoTime();
+            tokens = Math.min(1, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            tokens -= 1;
+            return tokens >= 0 ? 0 : (long) (-tokens / tokensPerNano);
+        }
+    }
+}
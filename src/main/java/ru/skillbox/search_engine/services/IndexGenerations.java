@@ -0,0 +1,38 @@
+package ru.skillbox.search_engine.services;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Счётчики поколений индекса по сайтам. Любое изменение индекса сайта увеличивает его поколение,
+ * что делает устаревшими закэшированные результаты поиска по этому сайту.
+ */
+@Component
+public class IndexGenerations {
+    private final Map<Integer, AtomicLong> generations = new ConcurrentHashMap<>();
+
+    public void increment(int siteId) {
+        generations.computeIfAbsent(siteId, id -> new AtomicLong()).incrementAndGet();
+    }
+
+    public long get(int siteId) {
+        AtomicLong generation = generations.get(siteId);
+        return generation == null ? 0 : generation.get();
+    }
+
+    /**
+     * Текущие поколения указанных сайтов.
+     */
+    public Map<Integer, Long> snapshot(Collection<Integer> siteIds) {
+        Map<Integer, Long> snapshot = new HashMap<>(siteIds.size() * 2);
+        for (int siteId : siteIds) {
+            snapshot.put(siteId, get(siteId));
+        }
+        return snapshot;
+    }
+}
@@ -0,0 +1,162 @@
+package ru.skillbox.search_engine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import ru.skillbox.search_engine.config.SitesList;
+import ru.skillbox.search_engine.dto.statistics.StageStatistics;
+import ru.skillbox.search_engine.model.Page;
+import ru.skillbox.search_engine.model.PageContent;
+import ru.skillbox.search_engine.model.Site;
+import ru.skillbox.search_engine.repositories.PageContentRepository;
+import ru.skillbox.search_engine.repositories.PageRepository;
+import ru.skillbox.search_engine.repositories.SiteRepository;
+import ru.skillbox.search_engine.util.ContentHash;
+import ru.skillbox.search_engine.util.HtmlExtractor;
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Конвейер индексации загруженных страниц: разбор и лемматизация (CPU),
+ * затем запись в базу. Страницы, содержимое которых не изменилось с прошлого обхода,
+ * только отдают ссылки — их леммы и индекс не перестраиваются. У каждого этапа своя ограниченная очередь и свой пул потоков,
+ * поэтому медленная запись не останавливает загрузку, пока очереди не заполнены.
+ */
+@Slf4j
+@Component
+public class IndexingPipeline {
+
+    /**
+     * Получатель событий обхода сайта.
+     */
+    interface Listener {
+        void linksFound(List<String> links);
+
+        /**
+         * Обработка страницы завершена: она записана в базу или отброшена из-за ошибки.
+         */
+        void pageCompleted(String url);
+    }
+
+    private final LemmaService lemmaService;
+    private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
+    private final SiteRepository siteRepository;
+    private final SiteCounters siteCounters;
+    private final EngineMetrics engineMetrics;
+    private final PipelineStage<CrawledPage> parseStage;
+    private final PipelineStage<CrawledPage> persistStage;
+
+    public IndexingPipeline(SitesList sitesList, LemmaService lemmaService,
+                            PageRepository pageRepository, PageContentRepository pageContentRepository,
+                            SiteRepository siteRepository, SiteCounters siteCounters,
+                            EngineMetrics engineMetrics) {
+        this.lemmaService = lemmaService;
+        this.pageRepository = pageRepository;
+        this.pageContentRepository = pageContentRepository;
+        this.siteRepository = siteRepository;
+        this.siteCounters = siteCounters;
+        this.engineMetrics = engineMetrics;
+        this.parseStage = new PipelineStage<>("parse", sitesList.getParseWorkers(),
+                sitesList.getParseQueueCapacity(), this::parse);
+        this.persistStage = new PipelineStage<>("persist", sitesList.getPersistWorkers(),
+                sitesList.getPersistQueueCapacity(), this::persist);
+    }
+
+    /**
+     * Передаёт загруженную страницу на разбор. Блокируется, если очередь разбора заполнена.
+     */
+    public void submit(CrawledPage page) throws InterruptedException {
+        parseStage.put(page);
+    }
+
+    public List<StageStatistics> getStatistics() {
+        return List.of(parseStage.statistics(), persistStage.statistics());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseStage.shutdown();
+        persistStage.shutdown();
+    }
+
+    private void parse(CrawledPage page) throws InterruptedException {
+        boolean handedOff = false;
+        try {
+            if (page.isSuccessful()) {
+                long start = System.nanoTime();
+                HtmlExtractor.Extract extract = HtmlExtractor.extract(page.getContent(), page.getUrl());
+                engineMetrics.parsed(System.nanoTime() - start);
+                page.getListener().linksFound(extract.links());
+                if (!page.isUnchanged()) {
+                    page.setContentHash(ContentHash.sha256(page.getContent()));
+                    PageRepository.PageState previous = page.getPrevious();
+                    if (previous != null && page.getContentHash().equals(previous.getContentHash())) {
+                        page.setUnchanged(true);
+                    } else {
+                        page.setTitle(extract.title());
+                        page.setText(extract.text());
+                        page.setLemmas(lemmaService.lemmatize(page.getText()));
+                    }
+                }
+            }
+            persistStage.put(page);
+            handedOff = true;
+        } finally {
+            if (!handedOff) {
+                page.getListener().pageCompleted(page.getUrl());
+            }
+        }
+    }
+
+    private void persist(CrawledPage crawledPage) {
+        try {
+            Site site = crawledPage.getSite();
+            PageRepository.PageState previous = crawledPage.getPrevious();
+            if (crawledPage.isUnchanged()) {
+                if (!Objects.equals(crawledPage.getEtag(), previous.getEtag())
+                        || !Objects.equals(crawledPage.getLastModified(), previous.getLastModified())) {
+                    pageRepository.updateValidators(previous.getId(), crawledPage.getEtag(), crawledPage.getLastModified());
+                }
+                log.info("Page not modified: {}", crawledPage.getPath());
+                return;
+            }
+
+            Page page = new Page();
+            if (previous != null) {
+                page.setId(previous.getId());
+            }
+            page.setSite(site);
+            page.setPath(crawledPage.getPath());
+            page.setCode(crawledPage.getCode());
+            page.setTitle(crawledPage.getTitle());
+            page.setText(crawledPage.getText());
+            page.setEtag(crawledPage.getEtag());
+            page.setLastModified(crawledPage.getLastModified());
+            page.setContentHash(crawledPage.getContentHash());
+            page = pageRepository.save(page);
+            PageContent content = new PageContent();
+            content.setPageId(page.getId());
+            content.setContent(crawledPage.getContent());
+            pageContentRepository.save(content);
+            if (previous == null) {
+                siteCounters.pageAdded(site.getId());
+            }
+            log.info("Saved page: {}", page.getPath());
+
+            if (crawledPage.isSuccessful()) {
+                lemmaService.indexPage(page, crawledPage.getLemmas());
+            } else if (previous != null) {
+                lemmaService.indexPage(page, new LemmaCounts(1));
+            }
+
+            site.setStatusTime(LocalDateTime.now());
+            siteRepository.save(site);
+        } finally {
+            crawledPage.getListener().pageCompleted(crawledPage.getUrl());
+        }
+    }
+}
@@ -2,19 +2,39 @@ package ru.skillbox.search_engine.services;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
 import ru.skillbox.search_engine.config.SitesList;
+import ru.skillbox.search_engine.dto.statistics.StageStatistics;
 import ru.skillbox.search_engine.model.Page;
+import ru.skillbox.search_engine.model.PageContent;
 import ru.skillbox.search_engine.model.Site;
 import ru.skillbox.search_engine.model.Status;
+import ru.skillbox.search_engine.repositories.CrawlCheckpointRepository;
+import ru.skillbox.search_engine.repositories.PageContentRepository;
 import ru.skillbox.search_engine.repositories.PageRepository;
+import ru.skillbox.search_engine.repositories.SiteGenerationRepository;
 import ru.skillbox.search_engine.repositories.SiteRepository;
+import ru.skillbox.search_engine.util.ContentHash;
+import ru.skillbox.search_engine.util.HtmlExtractor;
 
+import java.net.HttpURLConnection;
 import java.time.LocalDateTime;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveAction;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -23,25 +43,80 @@ public class IndexingService {
     private final SitesList sitesList;
     private final SiteRepository siteRepository;
     private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
     private final LemmaService lemmaService;
+    private final WordFormCache wordFormCache;
+    private final PageFetcher pageFetcher;
+    private final IndexingPipeline indexingPipeline;
+    private final IndexGenerations indexGenerations;
+    private final SiteCounters siteCounters;
+    private final CrawlCheckpointRepository crawlCheckpointRepository;
+    private final SiteGenerationRepository siteGenerationRepository;
+    private final InvertedIndex invertedIndex;
+    private final LemmaFrequencies lemmaFrequencies;
 
+    private final Set<SiteCrawler> activeCrawlers = ConcurrentHashMap.newKeySet();
+    private final PipelineStage.StageCounter fetchCounter = new PipelineStage.StageCounter();
+    private final AtomicInteger runningSites = new AtomicInteger();
+    /**
+     * Снимается, только когда завершился поток последнего сайта: его страницы к этому моменту уже записаны.
+     */
     private volatile boolean isIndexing = false;
+    private volatile boolean stopRequested = false;
 
-    public void startIndexing() {
+    /**
+     * Запускает обход всех сайтов из конфигурации. Полный обход строит новое поколение индекса,
+     * а поиск до его завершения продолжает работать по предыдущему.
+     *
+     * @param incremental повторный обход уже проиндексированных сайтов: условные запросы
+     *                    и перестроение индекса только для изменившихся страниц
+     */
+    public void startIndexing(boolean incremental) {
+        launch(incremental ? "incremental" : "full", site -> indexSite(site, incremental));
+    }
+
+    /**
+     * Продолжает обход сайтов, остановленный вызовом stopIndexing или перезапуском приложения,
+     * с сохранённой контрольной точки. Сайты без незавершённого обхода пропускаются.
+     */
+    public void resumeIndexing() {
+        launch("resumed", this::resumeSite);
+    }
+
+    private synchronized void launch(String mode, Consumer<SitesList.Site> task) {
         if (isIndexing) {
             log.error("Indexing is already running");
             throw new IllegalStateException("Indexing is already running");
         }
         isIndexing = true;
-        log.info("Starting indexing for {} sites", sitesList.getSites().size());
+        stopRequested = false;
+        log.info("Starting {} indexing for {} sites", mode, sitesList.getSites().size());
 
+        runningSites.set(sitesList.getSites().size());
         for (SitesList.Site site : sitesList.getSites()) {
-            new Thread(() -> indexSite(site)).start();
+            Thread.ofVirtual().name("indexing-" + site.getName()).start(() -> {
+                try {
+                    task.accept(site);
+                } finally {
+                    if (runningSites.decrementAndGet() == 0) {
+                        isIndexing = false;
+                        log.info("Indexing finished for all sites");
+                    }
+                }
+            });
         }
     }
 
+    public boolean isIndexing() {
+        return isIndexing;
+    }
+
+    /**
+     * Останавливает загрузку новых страниц. Индексация считается идущей, пока уже загруженные страницы
+     * не записаны: новый обход до этого не запустится и не удалит поколение, в которое они пишутся.
+     */
     public void stopIndexing() {
-        isIndexing = false;
+        stopRequested = true;
         log.info("Indexing stopped by user");
     }
 
@@ -49,7 +124,7 @@ public class IndexingService {
         String baseUrl = url.substring(0, url.indexOf('/', 8) + 1);
         log.info("Indexing single page: {}", url);
 
-        Site site = siteRepository.findByUrl(baseUrl)
+        Site site = siteRepository.findFirstByUrlAndActiveTrueOrderByIdDesc(baseUrl)
                 .orElseGet(() -> {
                     SitesList.Site configSite = sitesList.getSites().stream()
                             .filter(s -> s.getUrl().equals(baseUrl))
@@ -60,39 +135,47 @@ public class IndexingService {
                     newSite.setName(configSite.getName());
                     newSite.setStatus(Status.INDEXING);
                     newSite.setStatusTime(LocalDateTime.now());
+                    newSite.setActive(true);
                     log.info("Created new site: {}", newSite.getUrl());
-                    return siteRepository.save(newSite);
+                    newSite = siteRepository.save(newSite);
+                    invertedIndex.activate(newSite.getId(), List.of());
+                    return newSite;
                 });
 
         try {
             log.info("Crawling page: {}", url);
-            Document doc = Jsoup.connect(url)
-                    .userAgent("HeliontSearchBot")
-                    .referrer("http://www.google.com")
-                    .timeout(10000)
-                    .get();
+            PageFetcher.Response response = pageFetcher.fetch(url, requestsPerSecond(baseUrl));
 
             String path = url.startsWith(site.getUrl()) ? url.replace(site.getUrl(), "/") : url;
 
-            if (pageRepository.existsByPathAndSite(path, site)) {
+            Page page;
+            boolean newPage = !pageRepository.existsByPathAndSite(path, site);
+            if (!newPage) {
                 log.info("Page already exists, updating: {}", path);
-                Page existingPage = pageRepository.findByPathAndSite(path, site);
-                existingPage.setCode(doc.connection().response().statusCode());
-                existingPage.setContent(doc.html());
-                pageRepository.save(existingPage);
+                page = pageRepository.findByPathAndSite(path, site);
+                page.setSite(site);
             } else {
-                Page page = new Page();
+                page = new Page();
                 page.setSite(site);
                 page.setPath(path);
-                page.setCode(doc.connection().response().statusCode());
-                page.setContent(doc.html());
-                pageRepository.save(page);
-                log.info("Saved new page: {}", page.getPath());
             }
+            HtmlExtractor.Extract extract = HtmlExtractor.extract(response.body(), url);
+            page.setCode(response.statusCode());
+            page.setTitle(extract.title());
+            page.setText(extract.text());
+            page.setEtag(response.header("ETag"));
+            page.setLastModified(response.header("Last-Modified"));
+            page.setContentHash(ContentHash.sha256(response.body()));
+            page = pageRepository.save(page);
+            saveContent(page, response.body());
+            if (newPage) {
+                siteCounters.pageAdded(site.getId());
+            }
+            log.info("Saved page: {}", page.getPath());
+
 
-            Page page = pageRepository.findByPathAndSite(path, site);
             log.info("Indexing lemmas for page: {}", page.getPath());
-            lemmaService.indexPage(page);
+            lemmaService.indexPage(page, lemmaService.lemmatize(page.getText()));
 
             site.setStatus(Status.INDEXED);
             site.setStatusTime(LocalDateTime.now());
@@ -106,8 +189,8 @@ public class IndexingService {
             errorPage.setSite(site);
             errorPage.setPath(path);
             errorPage.setCode(e.getStatusCode());
-            errorPage.setContent("HTTP Error: " + e.getStatusCode());
-            pageRepository.save(errorPage);
+            saveContent(pageRepository.save(errorPage), "HTTP Error: " + e.getStatusCode());
+            siteCounters.pageAdded(site.getId());
             site.setStatus(Status.FAILED);
             site.setLastError("HTTP Error: " + e.getStatusCode());
             siteRepository.save(site);
@@ -119,27 +202,94 @@ public class IndexingService {
         }
     }
 
-    private void indexSite(SitesList.Site site) {
+    private void saveContent(Page page, String html) {
+        PageContent content = new PageContent();
+        content.setPageId(page.getId());
+        content.setContent(html);
+        pageContentRepository.save(content);
+    }
+
+    private double requestsPerSecond(String siteUrl) {
+        return sitesList.getSites().stream()
+                .filter(s -> s.getUrl().equals(siteUrl))
+                .mapToDouble(SitesList.Site::getRequestsPerSecond)
+                .findFirst()
+                .orElse(SitesList.DEFAULT_REQUESTS_PER_SECOND);
+    }
+
+    private void indexSite(SitesList.Site site, boolean incremental) {
         log.info("Indexing site: {}", site.getUrl());
-        Site siteEntity = new Site();
-        siteEntity.setUrl(site.getUrl());
-        siteEntity.setName(site.getName());
+        Site siteEntity = incremental
+                ? siteRepository.findFirstByUrlAndActiveTrueOrderByIdDesc(site.getUrl()).orElse(null) : null;
+        Map<String, PageRepository.PageState> knownPages = Map.of();
+        if (siteEntity == null) {
+            deleteGenerations(site.getUrl(), siteGenerationRepository.findInactive(site.getUrl()));
+            siteEntity = new Site();
+            siteEntity.setUrl(site.getUrl());
+            siteEntity.setName(site.getName());
+            siteEntity.setActive(!siteGenerationRepository.hasActive(site.getUrl()));
+        } else {
+            knownPages = pageRepository.findPageStatesBySite(siteEntity).stream()
+                    .collect(Collectors.toMap(PageRepository.PageState::getPath, Function.identity(), (a, b) -> a));
+            siteEntity.setLastError(null);
+            log.info("Re-crawling {} known pages of site: {}", knownPages.size(), site.getUrl());
+        }
+        crawlCheckpointRepository.deleteBySiteUrl(site.getUrl());
+        siteEntity.setStatus(Status.INDEXING);
+        siteEntity.setStatusTime(LocalDateTime.now());
+        siteEntity = siteRepository.save(siteEntity);
+        if (siteEntity.isActive()) {
+            invertedIndex.activate(siteEntity.getId(), List.of());
+        } else {
+            log.info("Building new index generation {} for site: {}", siteEntity.getId(), site.getUrl());
+        }
+
+        SiteCrawler crawler = new SiteCrawler(siteEntity, site.getRequestsPerSecond(), knownPages);
+        crawler.enqueue(site.getUrl());
+        runCrawl(siteEntity, crawler);
+    }
+
+    private void resumeSite(SitesList.Site site) {
+        Site siteEntity = siteRepository.findFirstByUrlOrderByIdDesc(site.getUrl()).orElse(null);
+        if (siteEntity == null || !crawlCheckpointRepository.hasPending(siteEntity.getId())) {
+            log.info("No interrupted crawl to resume for site: {}", site.getUrl());
+            return;
+        }
+        CrawlCheckpointRepository.Checkpoint checkpoint = crawlCheckpointRepository.load(siteEntity.getId());
+        Map<String, PageRepository.PageState> knownPages = pageRepository.findPageStatesBySite(siteEntity).stream()
+                .collect(Collectors.toMap(PageRepository.PageState::getPath, Function.identity(), (a, b) -> a));
+        log.info("Resuming crawl of {}: {} URLs visited, {} queued, {} pages stored", site.getUrl(),
+                checkpoint.visited().size(), checkpoint.queued().size(), knownPages.size());
+        siteEntity.setLastError(null);
         siteEntity.setStatus(Status.INDEXING);
         siteEntity.setStatusTime(LocalDateTime.now());
         siteRepository.save(siteEntity);
 
+        SiteCrawler crawler = new SiteCrawler(siteEntity, site.getRequestsPerSecond(), knownPages);
+        crawler.restore(checkpoint);
+        runCrawl(siteEntity, crawler);
+    }
+
+    private void runCrawl(Site siteEntity, SiteCrawler crawler) {
         boolean hasErrors = false;
         try {
-            ForkJoinPool pool = new ForkJoinPool();
-            pool.invoke(new SiteCrawler(siteEntity, siteEntity.getUrl(), this));
-            if (isIndexing) {
-                siteEntity.setStatus(Status.INDEXED);
-                log.info("Site indexing completed: {}", siteEntity.getUrl());
-            } else {
+            crawler.crawl(sitesList.getCrawlWorkers());
+            if (stopRequested) {
                 siteEntity.setStatus(Status.FAILED);
                 siteEntity.setLastError("Indexing stopped by user");
                 log.warn("Site indexing interrupted: {}", siteEntity.getUrl());
                 hasErrors = true;
+            } else if (!pageRepository.existsBySiteAndCodeLessThan(siteEntity, HttpURLConnection.HTTP_BAD_REQUEST)) {
+                // Сайт был недоступен: поиск продолжает работать по прежнему поколению, новое не активируется
+                crawlCheckpointRepository.deleteBySite(siteEntity.getId());
+                siteEntity.setStatus(Status.FAILED);
+                siteEntity.setLastError("No pages fetched successfully, previous index kept");
+                log.warn("No pages fetched successfully, keeping previous index of site: {}", siteEntity.getUrl());
+                hasErrors = true;
+            } else {
+                crawlCheckpointRepository.deleteBySite(siteEntity.getId());
+                siteEntity.setStatus(Status.INDEXED);
+                log.info("Site indexing completed: {}", siteEntity.getUrl());
             }
         } catch (Exception e) {
             siteEntity.setStatus(Status.FAILED);
@@ -149,6 +299,13 @@ public class IndexingService {
         }
         siteEntity.setStatusTime(LocalDateTime.now());
         siteRepository.save(siteEntity);
+        lemmaFrequencies.flush();
+        invertedIndex.flush(siteEntity.getId());
+        if (!hasErrors) {
+            promote(siteEntity);
+        }
+        indexGenerations.increment(siteEntity.getId());
+        log.info("Word form cache: size={}, {}", wordFormCache.size(), wordFormCache.stats());
 
         if (hasErrors && pageRepository.countBySite(siteEntity) == 0) {
             siteEntity.setStatus(Status.FAILED);
@@ -157,64 +314,231 @@ public class IndexingService {
         }
     }
 
-    private class SiteCrawler extends RecursiveAction {
+    /**
+     * Переключает поиск на законченное поколение сайта и удаляет все прежние.
+     * Вызывается, только если обход загрузил хотя бы одну страницу без ошибки.
+     */
+    private void promote(Site siteEntity) {
+        List<Integer> replaced = siteGenerationRepository.activate(siteEntity.getId(), siteEntity.getUrl());
+        invertedIndex.activate(siteEntity.getId(), replaced);
+        deleteGenerations(siteEntity.getUrl(), replaced);
+    }
+
+    private void deleteGenerations(String url, List<Integer> siteIds) {
+        if (siteIds.isEmpty()) {
+            return;
+        }
+        siteGenerationRepository.delete(siteIds);
+        for (int siteId : siteIds) {
+            invertedIndex.removeSite(siteId);
+            siteCounters.siteRemoved(siteId);
+        }
+        log.info("Deleted index generations {} of site: {}", siteIds, url);
+    }
+
+    /**
+     * Статистика этапов индексации: загрузка страниц, разбор и запись в базу.
+     */
+    public List<StageStatistics> getPipelineStatistics() {
+        int frontier = activeCrawlers.stream().mapToInt(SiteCrawler::frontierSize).sum();
+        int workers = activeCrawlers.size() * sitesList.getCrawlWorkers();
+        List<StageStatistics> statistics = new ArrayList<>();
+        statistics.add(fetchCounter.statistics("fetch", workers, frontier, Integer.MAX_VALUE));
+        statistics.addAll(indexingPipeline.getStatistics());
+        return statistics;
+    }
+
+    /**
+     * Обход одного сайта: общая очередь URL, множество посещённых страниц
+     * и несколько рабочих виртуальных потоков, которые загружают страницы и передают их в {@link IndexingPipeline}.
+     * Найденные при разборе ссылки возвращаются в очередь; частоту запросов к хосту ограничивает {@link HostRateLimiter}.
+     * Новые и завершённые URL периодически сохраняются в {@link CrawlCheckpointRepository}, чтобы обход можно было продолжить.
+     */
+    private class SiteCrawler implements IndexingPipeline.Listener {
+        private static final long POLL_TIMEOUT_MS = 100;
+        /**
+         * Ключи btree-индексов page(site_id, path) и crawl_url(site_id, url) ограничены примерно 2,7 КБ.
+         */
+        private static final int MAX_URL_LENGTH = 2048;
+
         private final Site site;
-        private final String url;
-        private final IndexingService service;
+        private final double requestsPerSecond;
+        private final Map<String, PageRepository.PageState> knownPages;
+        private final BlockingQueue<String> frontier = new LinkedBlockingQueue<>();
+        private final Set<String> visited = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final Queue<String> discovered = new ConcurrentLinkedQueue<>();
+        private final Queue<String> completed = new ConcurrentLinkedQueue<>();
 
-        SiteCrawler(Site site, String url, IndexingService service) {
+        SiteCrawler(Site site, double requestsPerSecond, Map<String, PageRepository.PageState> knownPages) {
             this.site = site;
-            this.url = url;
-            this.service = service;
+            this.requestsPerSecond = requestsPerSecond;
+            this.knownPages = knownPages;
+        }
+
+        void crawl(int workers) throws InterruptedException {
+            activeCrawlers.add(this);
+            siteCounters.crawlStarted(site.getId(), frontier::size);
+            long interval = sitesList.getCheckpointInterval().toMillis();
+            try {
+                ExecutorService executor = Executors.newThreadPerTaskExecutor(
+                        Thread.ofVirtual().name("crawler-" + site.getId() + "-", 0).factory());
+                for (int i = 0; i < workers; i++) {
+                    executor.submit(this::work);
+                }
+                executor.shutdown();
+                while (!executor.awaitTermination(interval, TimeUnit.MILLISECONDS)) {
+                    checkpoint();
+                    log.info("Crawling {}: {} pages visited, {} pending", site.getUrl(), visited.size(), pending.get());
+                }
+                long nextCheckpoint = System.currentTimeMillis() + interval;
+                while (inFlight.get() > 0) {
+                    Thread.sleep(POLL_TIMEOUT_MS);
+                    if (System.currentTimeMillis() >= nextCheckpoint) {
+                        checkpoint();
+                        nextCheckpoint += interval;
+                    }
+                }
+            } finally {
+                checkpoint();
+                activeCrawlers.remove(this);
+                siteCounters.crawlFinished(site.getId());
+            }
+        }
+
+        /**
+         * Восстанавливает множество посещённых URL и очередь из контрольной точки.
+         */
+        void restore(CrawlCheckpointRepository.Checkpoint checkpoint) {
+            visited.addAll(checkpoint.visited());
+            pending.addAndGet(checkpoint.queued().size());
+            frontier.addAll(checkpoint.queued());
+        }
+
+        int frontierSize() {
+            return frontier.size();
         }
 
         @Override
-        protected void compute() {
-            if (!service.isIndexing) return;
+        public void linksFound(List<String> links) {
+            links.stream()
+                    .filter(link -> link.startsWith(site.getUrl()) && link.length() <= MAX_URL_LENGTH
+                            && pageFetcher.isFetchable(link))
+                    .forEach(this::enqueue);
+        }
+
+        @Override
+        public void pageCompleted(String url) {
+            completed.add(url);
+            release();
+        }
 
+        /**
+         * Снимает URL с учёта, не отмечая его завершённым: при продолжении обхода он будет загружен снова.
+         */
+        private void release() {
+            inFlight.decrementAndGet();
+            pending.decrementAndGet();
+        }
+
+        /**
+         * Сохраняет URL, найденные и завершённые с прошлой контрольной точки.
+         * Завершённые забираются первыми: их ссылки к этому моменту уже в очереди найденных
+         * и попадут в ту же транзакцию, поэтому сохранённое состояние не теряет URL.
+         */
+        private void checkpoint() {
+            List<String> done = drain(completed);
+            List<String> found = drain(discovered);
+            if (done.isEmpty() && found.isEmpty()) {
+                return;
+            }
             try {
-                log.info("Crawling page: {}", url);
-                Document doc = Jsoup.connect(url)
-                        .userAgent("HeliontSearchBot")
-                        .referrer("http://www.google.com")
-                        .timeout(10000)
-                        .get();
+                crawlCheckpointRepository.save(site.getId(), found, done);
+            } catch (Exception e) {
+                log.warn("Failed to save crawl checkpoint for {}: {}", site.getUrl(), e.getMessage());
+                discovered.addAll(found);
+                completed.addAll(done);
+            }
+        }
 
-                Page page = new Page();
-                page.setSite(site);
-                page.setPath(url.replace(site.getUrl(), "/"));
-                page.setCode(doc.connection().response().statusCode());
-                page.setContent(doc.html());
-                pageRepository.save(page);
-                log.info("Saved page: {}", page.getPath());
-
-                log.info("Indexing lemmas for page: {}", page.getPath());
-                service.lemmaService.indexPage(page);
-
-                doc.select("a[href]").stream()
-                        .map(link -> link.attr("abs:href"))
-                        .filter(link -> link.startsWith(site.getUrl()))
-                        .filter(link -> !pageRepository.existsByPathAndSite(link.replace(site.getUrl(), "/"), site))
-                        .forEach(link -> {
-                            SiteCrawler task = new SiteCrawler(site, link, service);
-                            task.fork();
-                            task.join();
-                        });
-
-                site.setStatusTime(LocalDateTime.now());
-                siteRepository.save(site);
-
-                Thread.sleep((long) (Math.random() * 4500 + 500));
+        private static List<String> drain(Queue<String> queue) {
+            List<String> drained = new ArrayList<>();
+            for (String url = queue.poll(); url != null; url = queue.poll()) {
+                drained.add(url);
+            }
+            return drained;
+        }
+
+        private void work() {
+            try {
+                while (!stopRequested) {
+                    String url = frontier.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                    if (url == null) {
+                        if (pending.get() == 0) return;
+                        continue;
+                    }
+                    inFlight.incrementAndGet();
+                    fetchPage(url);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        void enqueue(String url) {
+            int fragment = url.indexOf('#');
+            String normalized = fragment >= 0 ? url.substring(0, fragment) : url;
+            if (visited.add(normalized)) {
+                pending.incrementAndGet();
+                discovered.add(normalized);
+                frontier.add(normalized);
+            }
+        }
+
+        private void fetchPage(String url) throws InterruptedException {
+            PageRepository.PageState previous = knownPages.get(url.replace(site.getUrl(), "/"));
+            CrawledPage page;
+            try {
+                log.info("Crawling page: {}", url);
+                PageFetcher.Response response = previous == null
+                        ? pageFetcher.fetch(url, requestsPerSecond)
+                        : pageFetcher.fetch(url, requestsPerSecond, previous.getEtag(), previous.getLastModified());
+                if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    String content = pageContentRepository.findContentByPageId(previous.getId()).orElse("");
+                    page = new CrawledPage(site, url, previous.getCode(), content, this);
+                    page.setUnchanged(true);
+                    page.setEtag(response.hasHeader("ETag") ? response.header("ETag") : previous.getEtag());
+                    page.setLastModified(response.hasHeader("Last-Modified")
+                            ? response.header("Last-Modified") : previous.getLastModified());
+                } else {
+                    page = new CrawledPage(site, url, response.statusCode(), response.body(), this);
+                    page.setEtag(response.header("ETag"));
+                    page.setLastModified(response.header("Last-Modified"));
+                }
+                fetchCounter.processed();
+                siteCounters.pageFetched(site.getId());
             } catch (org.jsoup.HttpStatusException e) {
                 log.error("HTTP error crawling page {}: Status={}, URL={}", url, e.getStatusCode(), e.getUrl());
-                Page errorPage = new Page();
-                errorPage.setSite(site);
-                errorPage.setPath(url.replace(site.getUrl(), "/"));
-                errorPage.setCode(e.getStatusCode());
-                errorPage.setContent("HTTP Error: " + e.getStatusCode());
-                pageRepository.save(errorPage);
+                page = new CrawledPage(site, url, e.getStatusCode(), "HTTP Error: " + e.getStatusCode(), this);
+                fetchCounter.failed();
+                siteCounters.pageFailed(site.getId());
+            } catch (InterruptedException e) {
+                release();
+                throw e;
             } catch (Exception e) {
                 log.error("Error crawling page {}: {}", url, e.getMessage());
+                fetchCounter.failed();
+                siteCounters.pageFailed(site.getId());
+                pageCompleted(url);
+                return;
+            }
+            page.setPrevious(previous);
+            try {
+                indexingPipeline.submit(page);
+            } catch (InterruptedException e) {
+                release();
+                throw e;
             }
         }
     }
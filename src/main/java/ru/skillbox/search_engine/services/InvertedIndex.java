@@ -0,0 +1,344 @@
+package ru.skillbox.search_engine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.skillbox.search_engine.repositories.IndexRepository;
+import ru.skillbox.search_engine.repositories.SiteGenerationRepository;
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Инвертированный индекс: сайт → лемма → отсортированный список страниц с рангами.
+ * Новые записи попадают в таблицу в памяти, которая фоновым потоком сбрасывается в неизменяемые сегменты
+ * на диске ({@link PostingSegment}); мелкие сегменты там же сливаются. Сегменты читаются через отображение
+ * файлов в память, поэтому основная часть индекса лежит вне кучи, а старт приложения только открывает файлы.
+ * Из index_table индекс перестраивается, лишь если сегментов нет или они не успели записать последние изменения.
+ * Поиск не обращается к таблицам lemma и index_table.
+ * Содержит все поколения сайтов, но поиск видит только активные: новое поколение
+ * заполняется при обходе и становится видимым одной заменой множества активных.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvertedIndex {
+    private final IndexRepository indexRepository;
+    private final SiteGenerationRepository siteGenerationRepository;
+    private final SegmentStore segmentStore;
+
+    private final Map<Integer, SiteIndex> sites = new ConcurrentHashMap<>();
+    private final ExecutorService background = Executors.newSingleThreadExecutor(
+            Thread.ofPlatform().name("index-segments").daemon(true).factory());
+    private volatile Set<Integer> activeSites = Set.of();
+    private volatile boolean dirty;
+    /**
+     * Транзакции, которые изменили index_table, но ещё не применили изменения к таблице в памяти.
+     */
+    private final AtomicInteger pendingCommits = new AtomicInteger();
+
+    /**
+     * Открывает сегменты из манифеста или, если они устарели, перестраивает их из index_table.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        Set<Integer> existing = Set.copyOf(siteGenerationRepository.findIds());
+        if (!segmentStore.isClean() || !open(existing)) {
+            rebuild();
+        }
+        activeSites = Set.copyOf(siteGenerationRepository.findActiveIds());
+        log.info("Inverted index loaded for {} sites, {} active", sites.size(), activeSites.size());
+    }
+
+    private boolean open(Set<Integer> existing) {
+        try {
+            Set<String> names = new HashSet<>();
+            int segments = 0;
+            for (Map.Entry<Integer, List<String>> site : segmentStore.readManifest().entrySet()) {
+                if (!existing.contains(site.getKey())) {
+                    continue;
+                }
+                List<PostingSegment> siteSegments = new ArrayList<>();
+                for (String name : site.getValue()) {
+                    siteSegments.add(segmentStore.open(name));
+                    names.add(name);
+                }
+                sites.put(site.getKey(), new SiteIndex(siteSegments));
+                segments += siteSegments.size();
+            }
+            segmentStore.retain(names);
+            writeManifest();
+            log.info("Opened {} index segments", segments);
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Failed to open index segments, rebuilding from database: {}", e.getMessage());
+            sites.clear();
+            return false;
+        }
+    }
+
+    /**
+     * Читает index_table в порядке id страниц: все записи страницы попадают в один слой,
+     * поэтому таблицу можно сбрасывать на диск на границе страниц.
+     */
+    private void rebuild() {
+        log.info("Rebuilding index segments from database");
+        try {
+            segmentStore.clear();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        markDirty();
+        int previousPage = -1;
+        int previousSite = -1;
+        try (Stream<IndexRepository.PostingEntry> entries = indexRepository.streamAllPostings()) {
+            Iterator<IndexRepository.PostingEntry> iterator = entries.iterator();
+            while (iterator.hasNext()) {
+                IndexRepository.PostingEntry entry = iterator.next();
+                if (entry.getPageId() != previousPage && previousSite >= 0
+                        && siteIndex(previousSite).memTableSize() >= segmentStore.getFlushThreshold()) {
+                    flushSite(previousSite);
+                }
+                siteIndex(entry.getSiteId()).addPosting(entry.getPageId(), entry.getLemma(), entry.getRank());
+                previousPage = entry.getPageId();
+                previousSite = entry.getSiteId();
+            }
+        }
+        sites.keySet().forEach(this::flushSite);
+        markCleanIfPersisted();
+    }
+
+    /**
+     * Заменяет леммы страницы после фиксации текущей транзакции: при откате индекс в памяти
+     * и сегменты не получают записей, которых нет в базе. Отметка о несохранённых изменениях
+     * ставится до фиксации и не снимается, пока изменения не применены.
+     */
+    public void updatePageAfterCommit(int siteId, int pageId, Collection<String> removed, LemmaCounts added) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            removePage(siteId, pageId, removed);
+            addPage(siteId, pageId, added);
+            return;
+        }
+        pendingCommits.incrementAndGet();
+        markDirty();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                removePage(siteId, pageId, removed);
+                addPage(siteId, pageId, added);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                pendingCommits.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Добавляет (или обновляет) леммы страницы в индексе.
+     */
+    public void addPage(int siteId, int pageId, LemmaCounts lemmas) {
+        SiteIndex index = siteIndex(siteId);
+        index.addPage(pageId, lemmas);
+        markDirty();
+        if (index.memTableSize() >= segmentStore.getFlushThreshold() && index.requestFlush()) {
+            flush(siteId);
+        }
+    }
+
+    /**
+     * Удаляет страницу из списков указанных лемм.
+     */
+    public void removePage(int siteId, int pageId, Collection<String> lemmas) {
+        siteIndex(siteId).removePage(pageId, lemmas);
+        markDirty();
+    }
+
+    /**
+     * Находит страницы сайта, содержащие все леммы, и суммирует их ранги.
+     */
+    public ScoredPages match(int siteId, Collection<String> lemmas) {
+        SiteIndex index = sites.get(siteId);
+        if (index == null || lemmas.isEmpty()) {
+            return ScoredPages.EMPTY;
+        }
+        return index.match(lemmas);
+    }
+
+    /**
+     * Сбрасывает таблицу сайта в памяти в сегмент в фоновом потоке.
+     */
+    public CompletableFuture<Void> flush(int siteId) {
+        return CompletableFuture.runAsync(() -> {
+            flushSite(siteId);
+            markCleanIfPersisted();
+        }, background);
+    }
+
+    /**
+     * Активные поколения сайтов, доступные поиску.
+     */
+    public Set<Integer> getSiteIds() {
+        return activeSites;
+    }
+
+    /**
+     * Делает поколение видимым поиску вместо замещённых поколений того же сайта.
+     */
+    public synchronized void activate(int siteId, Collection<Integer> replaced) {
+        Set<Integer> active = new HashSet<>(activeSites);
+        active.removeAll(replaced);
+        active.add(siteId);
+        activeSites = Set.copyOf(active);
+    }
+
+    public synchronized void removeSite(int siteId) {
+        Set<Integer> active = new HashSet<>(activeSites);
+        active.remove(siteId);
+        activeSites = Set.copyOf(active);
+        SiteIndex removed = sites.remove(siteId);
+        if (removed != null) {
+            try {
+                writeManifest();
+            } catch (IOException e) {
+                log.warn("Failed to update index manifest: {}", e.getMessage());
+            }
+            segmentStore.delete(removed.segments());
+        }
+    }
+
+    /**
+     * Дописывает таблицы в памяти на диск, чтобы следующий старт открыл сегменты без перестроения.
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        background.shutdown();
+        background.awaitTermination(1, TimeUnit.MINUTES);
+        sites.keySet().forEach(this::flushSite);
+        markCleanIfPersisted();
+    }
+
+    private void flushSite(int siteId) {
+        SiteIndex index = sites.get(siteId);
+        MemTable frozen = index == null ? null : index.freeze();
+        if (frozen == null) {
+            return;
+        }
+        try (PostingSegment.Writer writer = segmentStore.create(siteId)) {
+            PostingSegment segment = frozen.writeTo(writer);
+            index.replace(List.of(frozen), segment);
+            if (sites.get(siteId) != index) {
+                segmentStore.delete(List.of(segment));
+                return;
+            }
+            writeManifest();
+            log.debug("Flushed {} lemmas of site {} to {}", segment.lemmaCount(), siteId, segment.file().getFileName());
+            List<PostingSegment> segments = index.segments();
+            if (segments.size() > segmentStore.getMaxSegments() && segments.size() > 1) {
+                merge(siteId, index, segments);
+            }
+        } catch (IOException e) {
+            log.error("Failed to write index segment for site {}: {}", siteId, e.getMessage());
+        }
+    }
+
+    /**
+     * Сливает самые новые сегменты: к ним добавляются более старые, пока старый сегмент не больше
+     * уже набранных вместе. Крупные старые сегменты переписываются редко, а число сегментов остаётся небольшим.
+     */
+    private void merge(int siteId, SiteIndex index, List<PostingSegment> all) throws IOException {
+        long start = System.nanoTime();
+        int count = 2;
+        long size = all.get(0).size() + all.get(1).size();
+        while (count < all.size() && all.get(count).size() <= size) {
+            size += all.get(count).size();
+            count++;
+        }
+        List<PostingSegment> segments = all.subList(0, count);
+        try (PostingSegment.Writer writer = segmentStore.create(siteId)) {
+            PostingSegment merged = PostingSegment.merge(segments, writer);
+            index.replace(segments, merged);
+            if (sites.get(siteId) != index) {
+                // Поколение удалено во время слияния: removeSite удалил либо исходные сегменты, либо новый, но не оба
+                segmentStore.delete(List.of(merged));
+                segmentStore.delete(segments);
+                return;
+            }
+            writeManifest();
+            segmentStore.delete(segments);
+            log.info("Merged {} index segments of site {} in {} ms", segments.size(), siteId,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+    }
+
+    private void writeManifest() throws IOException {
+        Map<Integer, List<PostingSegment>> segments = new LinkedHashMap<>();
+        sites.forEach((siteId, index) -> segments.put(siteId, index.segments()));
+        segmentStore.writeManifest(segments);
+    }
+
+    /**
+     * Отмечает, что в памяти есть записи, которых нет в сегментах. Вызывается после записи в таблицу
+     * и до фиксации транзакции индексации, поэтому изменение в базе без отметки на диске невозможно.
+     */
+    private void markDirty() {
+        if (!dirty) {
+            synchronized (this) {
+                if (!dirty) {
+                    try {
+                        segmentStore.markDirty();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    dirty = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Снимает отметку, если все записи уже в сегментах. Флаг сбрасывается до проверки:
+     * запись, попавшая в таблицу после проверки, снова создаст отметку.
+     */
+    private synchronized void markCleanIfPersisted() {
+        dirty = false;
+        if (pendingCommits.get() == 0 && sites.values().stream().allMatch(SiteIndex::isPersisted)) {
+            try {
+                writeManifest();
+                segmentStore.markClean();
+                return;
+            } catch (IOException e) {
+                log.warn("Failed to mark index segments clean: {}", e.getMessage());
+            }
+        }
+        dirty = true;
+    }
+
+    private SiteIndex siteIndex(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new SiteIndex(List.of()));
+    }
+}
@@ -0,0 +1,238 @@
+package ru.skillbox.search_engine.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.skillbox.search_engine.repositories.IndexJdbcRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Изменения частот лемм копятся в памяти и раз в интервал записываются в базу одним запросом
+ * {@code frequency = frequency + delta}. Частые леммы встречаются почти на каждой странице сайта,
+ * и при обновлении в транзакции страницы параллельные потоки ждали бы блокировок одних и тех же строк lemma.
+ * Повторная индексация неизменённых лемм страницы даёт −1 и +1, которые взаимно сокращаются до записи.
+ * Пока в памяти есть несохранённые изменения или транзакции, которые их добавят, в каталоге сегментов
+ * лежит отметка: после аварийной остановки частоты пересчитываются по index_table.
+ */
+@Slf4j
+@Component
+public class LemmaFrequencies {
+    private final IndexJdbcRepository indexJdbcRepository;
+    private final SegmentStore segmentStore;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("lemma-frequencies").daemon(true).factory());
+
+    /**
+     * Запись берёт блокировку на чтение, замена таблицы при сбросе — на запись,
+     * поэтому ни одно изменение не попадает в уже выгруженную таблицу.
+     */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile Map<Integer, LongAdder> deltas = new ConcurrentHashMap<>();
+    /**
+     * Транзакции, которые изменили index_table, но ещё не добавили свои изменения частот.
+     */
+    private final AtomicInteger pendingCommits = new AtomicInteger();
+    private volatile boolean pending;
+    private final Object markerLock = new Object();
+    private final Duration flushInterval;
+
+    public LemmaFrequencies(IndexJdbcRepository indexJdbcRepository, SegmentStore segmentStore,
+                            @Value("${lemma-frequencies.flush-interval:1s}") Duration flushInterval) {
+        this.indexJdbcRepository = indexJdbcRepository;
+        this.segmentStore = segmentStore;
+        this.pending = segmentStore.hasPendingFrequencies();
+        this.flushInterval = flushInterval;
+    }
+
+    /**
+     * Пересчитывает частоты, если прошлый запуск остановился, не записав изменения частот из памяти,
+     * и только затем запускает периодический сброс: иначе он снял бы отметку до пересчёта.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void recountIfInterrupted() {
+        if (segmentStore.hasPendingFrequencies()) {
+            long start = System.nanoTime();
+            int updated = indexJdbcRepository.recountFrequencies();
+            log.info("Recounted frequencies of {} lemmas in {} ms", updated,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            markFlushedIfEmpty();
+        }
+        long interval = flushInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Прибавляет delta к частоте каждой леммы.
+     */
+    public void add(int[] lemmaIds, int delta) {
+        if (lemmaIds.length == 0) {
+            return;
+        }
+        lock.readLock().lock();
+        try {
+            markPending();
+            Map<Integer, LongAdder> current = deltas;
+            for (int lemmaId : lemmaIds) {
+                current.computeIfAbsent(lemmaId, id -> new LongAdder()).add(delta);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Прибавляет delta после фиксации текущей транзакции; откат транзакции частоты не меняет.
+     */
+    public void addAfterCommit(int[] lemmaIds, int delta) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add(lemmaIds, delta);
+            return;
+        }
+        if (lemmaIds.length == 0) {
+            return;
+        }
+        pendingCommits.incrementAndGet();
+        markPending();
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add(lemmaIds, delta);
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                pendingCommits.decrementAndGet();
+            }
+        });
+    }
+
+    /**
+     * Записывает накопленные изменения в порядке id лемм. При ошибке изменения возвращаются в таблицу.
+     */
+    public synchronized void flush() {
+        Map<Integer, LongAdder> drained;
+        lock.writeLock().lock();
+        try {
+            drained = deltas;
+            if (drained.isEmpty()) {
+                markFlushedIfEmpty();
+                return;
+            }
+            deltas = new ConcurrentHashMap<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        int[] ids = new int[drained.size()];
+        int[] values = new int[drained.size()];
+        int count = 0;
+        for (Map.Entry<Integer, LongAdder> entry : new TreeMap<>(drained).entrySet()) {
+            int delta = entry.getValue().intValue();
+            if (delta != 0) {
+                ids[count] = entry.getKey();
+                values[count++] = delta;
+            }
+        }
+        if (count == 0) {
+            markFlushedIfEmpty();
+            return;
+        }
+        ids = Arrays.copyOf(ids, count);
+        values = Arrays.copyOf(values, count);
+        try {
+            indexJdbcRepository.addFrequencies(ids, values);
+            log.debug("Flushed frequency changes of {} lemmas", count);
+            markFlushedIfEmpty();
+        } catch (RuntimeException e) {
+            log.warn("Failed to flush lemma frequencies, will retry: {}", e.getMessage());
+            restore(ids, values);
+        }
+    }
+
+    private void restore(int[] ids, int[] values) {
+        lock.readLock().lock();
+        try {
+            Map<Integer, LongAdder> current = deltas;
+            for (int i = 0; i < ids.length; i++) {
+                current.computeIfAbsent(ids[i], id -> new LongAdder()).add(values[i]);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ставит отметку до того, как изменение попадёт в базу или в таблицу в памяти.
+     */
+    private void markPending() {
+        if (!pending) {
+            synchronized (markerLock) {
+                if (!pending) {
+                    try {
+                        segmentStore.markFrequenciesPending();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    pending = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * Снимает отметку, если несохранённых изменений нет. Проверка идёт под блокировкой на запись,
+     * а запись изменения ставит отметку под блокировкой на чтение, поэтому изменение, добавленное
+     * после проверки, снова создаст отметку.
+     */
+    private void markFlushedIfEmpty() {
+        if (!pending) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            synchronized (markerLock) {
+                pending = false;
+                if (pendingCommits.get() == 0 && deltas.isEmpty()) {
+                    try {
+                        segmentStore.markFrequenciesFlushed();
+                        return;
+                    } catch (IOException e) {
+                        log.warn("Failed to clear lemma frequency marker: {}", e.getMessage());
+                    }
+                }
+                pending = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+        flush();
+    }
+}
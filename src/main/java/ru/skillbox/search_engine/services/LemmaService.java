@@ -3,55 +3,72 @@ package ru.skillbox.search_engine.services;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.lucene.morphology.LuceneMorphology;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
-import ru.skillbox.search_engine.model.Lemma;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import ru.skillbox.search_engine.model.Page;
 import ru.skillbox.search_engine.model.Site;
-import ru.skillbox.search_engine.repositories.IndexRepository;
-import ru.skillbox.search_engine.repositories.LemmaRepository;
+import ru.skillbox.search_engine.repositories.IndexJdbcRepository;
+import ru.skillbox.search_engine.util.HtmlExtractor;
+import ru.skillbox.search_engine.util.LemmaCounts;
+import ru.skillbox.search_engine.util.WordTokenizer;
 
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 @Slf4j
 @Service
 @RequiredArgsConstructor
 public class LemmaService {
 
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final IndexJdbcRepository indexJdbcRepository;
+    private final InvertedIndex invertedIndex;
+    private final LemmaFrequencies lemmaFrequencies;
+    private final IndexGenerations indexGenerations;
+    private final SiteCounters siteCounters;
+    private final EngineMetrics engineMetrics;
+    private final WordFormCache wordFormCache;
     private final LuceneMorphology russianLuceneMorphology;
     private final LuceneMorphology englishLuceneMorphology;
 
-    public Map<String, Integer> getLemmasFromText(String html) {
-        String text = Jsoup.parse(html).text();
-        Map<String, Integer> lemmas = new HashMap<>();
-        String[] words = text.toLowerCase().split("\\P{L}+");
-
-        for (String word : words) {
-            if (word.isEmpty()) continue;
+    public LemmaCounts getLemmasFromText(String html) {
+        return lemmatize(HtmlExtractor.extract(html, "").text());
+    }
 
-            if (isCyrillic(word)) {
+    /**
+     * Подсчитывает леммы в тексте, уже очищенном от HTML.
+     */
+    public LemmaCounts lemmatize(String text) {
+        long start = System.nanoTime();
+        int[] tokens = new int[1];
+        LemmaCounts lemmas = new LemmaCounts();
+        WordTokenizer.tokenize(text, (word, script) -> {
+            tokens[0]++;
+            if (script == WordTokenizer.Script.CYRILLIC) {
                 processWord(word, russianLuceneMorphology, lemmas);
-            } else if (isLatin(word)) {
+            } else if (script == WordTokenizer.Script.LATIN) {
                 processWord(word, englishLuceneMorphology, lemmas);
             }
-        }
+        });
+        engineMetrics.lemmatized(tokens[0], System.nanoTime() - start);
         return lemmas;
     }
 
-    private void processWord(String word, LuceneMorphology morphology, Map<String, Integer> lemmas) {
+    private void processWord(String word, LuceneMorphology morphology, LemmaCounts lemmas) {
+        String lemma = wordFormCache.getLemma(word, w -> resolveLemma(w, morphology));
+        if (lemma != null) {
+            lemmas.increment(lemma);
+        }
+    }
+
+    private String resolveLemma(String word, LuceneMorphology morphology) {
         try {
-            if (isServiceWord(word, morphology)) return;
+            if (isServiceWord(word, morphology)) return null;
             List<String> normalForms = morphology.getNormalForms(word);
-            if (!normalForms.isEmpty()) {
-                String lemma = normalForms.get(0);
-                lemmas.put(lemma, lemmas.getOrDefault(lemma, 0) + 1);
-            }
+            return normalForms.isEmpty() ? null : normalForms.get(0);
         } catch (Exception e) {
             log.warn("Skipping word '{}': {}", word, e.getMessage());
+            return null;
         }
     }
 
@@ -65,47 +82,47 @@ public class LemmaService {
         }
     }
 
-    private boolean isCyrillic(String word) {
-        return word.matches("^[а-яё]+$");
-    }
-
-    private boolean isLatin(String word) {
-        return word.matches("^[a-z]+$");
-    }
-
-    public void indexPage(Page page) {
-        log.info("Starting lemma indexing for page: {}", page.getPath());
-        Map<String, Integer> lemmas = getLemmasFromText(page.getContent());
+    /**
+     * Записывает леммы страницы вместо прежних. Частоты лемм меняются после фиксации транзакции
+     * через {@link LemmaFrequencies}, поэтому транзакция блокирует только впервые вставленные строки lemma.
+     * Индекс в памяти и поколение сайта для кэша поиска тоже обновляются только после фиксации.
+     */
+    @Transactional
+    public void indexPage(Page page, LemmaCounts lemmas) {
         log.info("Found {} lemmas for page: {}", lemmas.size(), page.getPath());
 
         Site site = page.getSite();
-        for (Map.Entry<String, Integer> entry : lemmas.entrySet()) {
-            String lemmaText = entry.getKey();
-            int frequency = entry.getValue();
-
-            Lemma lemma = lemmaRepository.findByLemmaAndSite(lemmaText, site)
-                    .orElseGet(() -> {
-                        Lemma newLemma = new Lemma();
-                        newLemma.setSite(site);
-                        newLemma.setLemma(lemmaText);
-                        newLemma.setFrequency(0);
-                        return newLemma;
-                    });
-            lemma.setFrequency(lemma.getFrequency() + 1);
-            lemmaRepository.save(lemma);
-            log.debug("Saved lemma: {} for site: {}", lemmaText, site.getUrl());
+        long start = System.nanoTime();
+        IndexJdbcRepository.PageLemmas previous = indexJdbcRepository.deletePageIndex(site.getId(), page.getId());
+        lemmaFrequencies.addAfterCommit(previous.ids(), -1);
 
-            ru.skillbox.search_engine.model.Index index = indexRepository.findByPageAndLemma(page, lemma)
-                    .orElseGet(() -> {
-                        ru.skillbox.search_engine.model.Index newIndex = new ru.skillbox.search_engine.model.Index();
-                        newIndex.setPage(page);
-                        newIndex.setLemma(lemma);
-                        return newIndex;
-                    });
-            index.setRank(frequency);
-            indexRepository.save(index);
-            log.debug("Saved index for lemma: {} on page: {}", lemmaText, page.getPath());
+        if (!lemmas.isEmpty()) {
+            IndexJdbcRepository.LemmaIds lemmaIds = indexJdbcRepository.findOrInsertLemmas(site.getId(), lemmas);
+            indexJdbcRepository.insertIndexes(site.getId(), page.getId(), lemmas, lemmaIds.ids());
+            lemmaFrequencies.addAfterCommit(lemmaIds.ids(), 1);
+            siteCounters.lemmasAdded(site.getId(), lemmaIds.inserted());
+            log.debug("Saved {} lemmas for site: {}", lemmas.size(), site.getUrl());
         }
+        engineMetrics.indexWritten(System.nanoTime() - start);
+        invertedIndex.updatePageAfterCommit(site.getId(), page.getId(), previous.lemmas(), lemmas);
+        afterCommit(() -> indexGenerations.increment(site.getId()));
         log.info("Finished lemma indexing for page: {}", page.getPath());
     }
+
+    /**
+     * Выполняет действие после фиксации текущей транзакции, а вне транзакции — сразу.
+     * Синхронизации вызываются в порядке регистрации.
+     */
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
 }
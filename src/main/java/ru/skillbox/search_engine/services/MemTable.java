@@ -0,0 +1,77 @@
+package ru.skillbox.search_engine.services;
+
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Изменяемый слой индекса в памяти: принимает записи страниц до сброса в {@link PostingSegment}.
+ * Запись выполняется под блокировкой {@link SiteIndex}, чтение — без блокировок.
+ */
+final class MemTable implements PostingLayer {
+    private final Map<String, PostingList> postings = new ConcurrentHashMap<>();
+    private final Set<Integer> covered = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger size = new AtomicInteger();
+
+    void addPage(int pageId, LemmaCounts lemmas) {
+        covered.add(pageId);
+        for (int i = 0; i < lemmas.size(); i++) {
+            add(pageId, lemmas.lemma(i), lemmas.count(i));
+        }
+    }
+
+    void add(int pageId, String lemma, float rank) {
+        covered.add(pageId);
+        postings.computeIfAbsent(lemma, l -> new PostingList()).put(pageId, rank);
+        size.incrementAndGet();
+    }
+
+    void removePage(int pageId, Collection<String> lemmas) {
+        covered.add(pageId);
+        for (String lemma : lemmas) {
+            PostingList list = postings.get(lemma);
+            if (list != null) {
+                list.remove(pageId);
+            }
+        }
+    }
+
+    /**
+     * Число записанных пар «лемма — страница»; по нему решается, когда сбрасывать слой на диск.
+     */
+    int size() {
+        return size.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return covered.isEmpty();
+    }
+
+    @Override
+    public PostingList.Snapshot postings(String lemma) {
+        PostingList list = postings.get(lemma);
+        return list == null ? null : list.snapshot();
+    }
+
+    @Override
+    public boolean covers(int pageId) {
+        return covered.contains(pageId);
+    }
+
+    /**
+     * Записывает слой в сегмент; вызывается только для замороженной таблицы.
+     */
+    PostingSegment writeTo(PostingSegment.Writer writer) throws IOException {
+        for (Map.Entry<String, PostingList> entry : new TreeMap<>(postings).entrySet()) {
+            writer.add(entry.getKey(), entry.getValue().snapshot());
+        }
+        return writer.finish(covered.stream().mapToInt(Integer::intValue).sorted().toArray());
+    }
+}
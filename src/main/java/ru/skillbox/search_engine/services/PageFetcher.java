@@ -0,0 +1,234 @@
+package ru.skillbox.search_engine.services;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.HttpStatusException;
+import org.jsoup.UnsupportedMimeTypeException;
+import org.springframework.stereotype.Component;
+import ru.skillbox.search_engine.config.CrawlerHttpSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Загрузка страниц с соблюдением ограничения частоты запросов к хосту.
+ * Рассчитана на вызов из виртуальных потоков: блокирующий ввод-вывод и ожидание токена их не расходуют.
+ * Все запросы идут через общий {@link HttpClient}, который держит соединения с хостами открытыми.
+ * Тип содержимого проверяется по заголовкам, до чтения тела: двоичные файлы не скачиваются.
+ * Таймаут запроса ограничивает только ожидание заголовков, поэтому на чтение тела отдельно отводится
+ * то же время: медленный сервер не задерживает поток обходчика дольше.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageFetcher {
+    private static final Pattern CHARSET = Pattern.compile("charset\\s*=\\s*[\"']?([\\w.:-]+)", Pattern.CASE_INSENSITIVE);
+    /**
+     * Столько байт начала страницы просматривается в поисках meta charset, если его нет в Content-Type.
+     */
+    private static final int CHARSET_SNIFF_LENGTH = 1024;
+
+    private final HttpClient crawlerHttpClient;
+    private final CrawlerHttpSettings settings;
+    private final HostRateLimiter hostRateLimiter;
+    private final EngineMetrics engineMetrics;
+
+    /**
+     * Ответ сервера с уже прочитанным и раскодированным телом.
+     */
+    public record Response(int statusCode, String body, HttpHeaders headers) {
+        public String header(String name) {
+            return headers.firstValue(name).orElse(null);
+        }
+
+        public boolean hasHeader(String name) {
+            return headers.firstValue(name).isPresent();
+        }
+    }
+
+    /**
+     * Можно ли загружать ссылку: адреса с расширениями двоичных файлов отсеиваются без запроса.
+     */
+    public boolean isFetchable(String url) {
+        int end = url.length();
+        int query = url.indexOf('?');
+        if (query >= 0) {
+            end = query;
+        }
+        int fragment = url.indexOf('#');
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        int dot = url.lastIndexOf('.', end - 1);
+        return dot < url.lastIndexOf('/', end - 1)
+                || !settings.getSkippedExtensions().contains(url.substring(dot + 1, end).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Загружает страницу без разбора HTML.
+     *
+     * @throws HttpStatusException           если сервер вернул код ошибки
+     * @throws UnsupportedMimeTypeException  если ответ не HTML; тело при этом не скачивается
+     */
+    public Response fetch(String url, double requestsPerSecond) throws IOException, InterruptedException {
+        return fetch(url, requestsPerSecond, null, null);
+    }
+
+    /**
+     * Условный запрос: если страница не изменилась с прошлой загрузки, сервер ответит 304 без тела.
+     *
+     * @param etag         значение ETag из прошлого ответа или null
+     * @param lastModified значение Last-Modified из прошлого ответа или null
+     */
+    public Response fetch(String url, double requestsPerSecond, String etag, String lastModified)
+            throws IOException, InterruptedException {
+        URI uri = URI.create(url);
+        String host = uri.getHost();
+        hostRateLimiter.acquire(host, requestsPerSecond);
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(settings.getReadTimeout())
+                .header("User-Agent", settings.getUserAgent())
+                .header("Referer", settings.getReferrer())
+                .header("Accept", String.join(", ", settings.getContentTypes()))
+                .header("Accept-Encoding", "gzip, deflate");
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+        long start = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = crawlerHttpClient.send(request.build(), this::bodySubscriber);
+        } catch (IOException e) {
+            engineMetrics.fetch(host, "error", System.nanoTime() - start);
+            throw e;
+        }
+        int status = response.statusCode();
+        engineMetrics.fetch(host, String.valueOf(status), System.nanoTime() - start);
+        try (InputStream body = response.body()) {
+            if (status >= HttpURLConnection.HTTP_BAD_REQUEST) {
+                throw new HttpStatusException("HTTP error fetching URL", status, url);
+            }
+            if (status == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return new Response(status, "", response.headers());
+            }
+            String contentType = response.headers().firstValue("Content-Type").orElse(null);
+            if (!isAccepted(contentType)) {
+                throw new UnsupportedMimeTypeException("Unhandled content type", contentType, url);
+            }
+            return new Response(status, readBeforeDeadline(body, response.headers(), contentType, url),
+                    response.headers());
+        }
+    }
+
+    /**
+     * Читает тело, а если оно не пришло целиком за время ожидания, закрывает поток по таймеру:
+     * это прерывает заблокированное чтение и соединение.
+     *
+     * @throws HttpTimeoutException если тело не получено вовремя
+     */
+    private String readBeforeDeadline(InputStream body, HttpHeaders headers, String contentType, String url)
+            throws IOException {
+        Duration timeout = settings.getReadTimeout();
+        // Срабатывает раньше закрытия потока, так что прерванное чтение видит его уже завершённым
+        CompletableFuture<Void> deadline = new CompletableFuture<Void>()
+                .completeOnTimeout(null, timeout.toNanos(), TimeUnit.NANOSECONDS);
+        deadline.thenRun(() -> closeQuietly(body));
+        try {
+            return read(body, headers, contentType);
+        } catch (IOException e) {
+            if (deadline.isDone()) {
+                throw new HttpTimeoutException("Body not received within " + timeout + ": " + url);
+            }
+            throw e;
+        } finally {
+            deadline.cancel(false);
+        }
+    }
+
+    private static void closeQuietly(InputStream body) {
+        try {
+            body.close();
+        } catch (IOException ignored) {
+            // Поток закрывается только ради прерывания чтения
+        }
+    }
+
+    /**
+     * Тело ошибок и ответов 304 вычитывается впустую, чтобы соединение осталось в пуле;
+     * остальные ответы отдаются потоком, закрытие которого прерывает загрузку.
+     */
+    private HttpResponse.BodySubscriber<InputStream> bodySubscriber(HttpResponse.ResponseInfo info) {
+        if (info.statusCode() >= HttpURLConnection.HTTP_BAD_REQUEST
+                || info.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            return HttpResponse.BodySubscribers.replacing(InputStream.nullInputStream());
+        }
+        return HttpResponse.BodySubscribers.ofInputStream();
+    }
+
+    private boolean isAccepted(String contentType) {
+        if (contentType == null) {
+            return true;
+        }
+        int semicolon = contentType.indexOf(';');
+        String mimeType = (semicolon >= 0 ? contentType.substring(0, semicolon) : contentType)
+                .trim().toLowerCase(Locale.ROOT);
+        return settings.getContentTypes().contains(mimeType);
+    }
+
+    /**
+     * Распаковывает тело и читает не больше максимального размера; остаток не скачивается.
+     */
+    private String read(InputStream raw, HttpHeaders headers, String contentType) throws IOException {
+        String encoding = headers.firstValue("Content-Encoding").orElse("identity").trim().toLowerCase(Locale.ROOT);
+        InputStream body = switch (encoding) {
+            case "gzip", "x-gzip" -> new GZIPInputStream(raw);
+            case "deflate" -> new InflaterInputStream(raw);
+            default -> raw;
+        };
+        byte[] bytes = body.readNBytes((int) Math.min(settings.getMaxBodySize().toBytes(), Integer.MAX_VALUE - 8));
+        return new String(bytes, charset(contentType, bytes));
+    }
+
+    /**
+     * Кодировка из Content-Type, затем из meta charset в начале страницы, иначе UTF-8.
+     */
+    private static Charset charset(String contentType, byte[] bytes) {
+        Charset charset = contentType == null ? null : charsetOf(contentType);
+        if (charset == null) {
+            charset = charsetOf(new String(bytes, 0, Math.min(bytes.length, CHARSET_SNIFF_LENGTH),
+                    StandardCharsets.ISO_8859_1));
+        }
+        return charset == null ? StandardCharsets.UTF_8 : charset;
+    }
+
+    private static Charset charsetOf(String text) {
+        Matcher matcher = CHARSET.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+        try {
+            return Charset.isSupported(matcher.group(1)) ? Charset.forName(matcher.group(1)) : null;
+        } catch (IllegalCharsetNameException e) {
+            return null;
+        }
+    }
+}
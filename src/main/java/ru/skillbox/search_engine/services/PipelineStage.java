@@ -0,0 +1,114 @@
+package ru.skillbox.search_engine.services;
+
+import lombok.extern.slf4j.Slf4j;
+import ru.skillbox.search_engine.dto.statistics.StageStatistics;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Этап конвейера индексации: ограниченная очередь и собственный пул обработчиков.
+ * Когда очередь заполнена, {@link #put} блокирует предыдущий этап.
+ */
+@Slf4j
+class PipelineStage<T> {
+
+    @FunctionalInterface
+    interface Handler<T> {
+        void handle(T item) throws Exception;
+    }
+
+    private final String name;
+    private final int workers;
+    private final BlockingQueue<T> queue;
+    private final ExecutorService executor;
+    private final Handler<T> handler;
+    private final StageCounter counter = new StageCounter();
+
+    PipelineStage(String name, int workers, int capacity, Handler<T> handler) {
+        this.name = name;
+        this.workers = workers;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.handler = handler;
+        this.executor = Executors.newFixedThreadPool(workers, Thread.ofPlatform().name(name + "-", 0).factory());
+        for (int i = 0; i < workers; i++) {
+            executor.submit(this::work);
+        }
+    }
+
+    void put(T item) throws InterruptedException {
+        queue.put(item);
+    }
+
+    StageStatistics statistics() {
+        return counter.statistics(name, workers, queue.size(), queue.size() + queue.remainingCapacity());
+    }
+
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void work() {
+        while (!Thread.currentThread().isInterrupted()) {
+            T item;
+            try {
+                item = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                handler.handle(item);
+                counter.processed();
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                counter.failed();
+                log.error("Stage {} failed to process item: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Счётчики обработанных элементов и пропускная способность этапа за последний интервал.
+     */
+    static class StageCounter {
+        private static final long SAMPLE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+        private final LongAdder processed = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private long sampleTime = System.nanoTime();
+        private long sampleCount;
+        private double throughput;
+
+        void processed() {
+            processed.increment();
+        }
+
+        void failed() {
+            failed.increment();
+        }
+
+        synchronized StageStatistics statistics(String name, int workers, int queueDepth, int queueCapacity) {
+            long now = System.nanoTime();
+            long count = processed.sum();
+            if (now - sampleTime >= SAMPLE_INTERVAL_NANOS) {
+                throughput = (count - sampleCount) * (double) TimeUnit.SECONDS.toNanos(1) / (now - sampleTime);
+                sampleTime = now;
+                sampleCount = count;
+            }
+            StageStatistics statistics = new StageStatistics();
+            statistics.setName(name);
+            statistics.setWorkers(workers);
+            statistics.setQueueDepth(queueDepth);
+            statistics.setQueueCapacity(queueCapacity);
+            statistics.setProcessed(count);
+            statistics.setFailed(failed.sum());
+            statistics.setThroughput(throughput);
+            return statistics;
+        }
+    }
+}
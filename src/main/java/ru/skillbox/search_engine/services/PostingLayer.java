@@ -0,0 +1,45 @@
+package ru.skillbox.search_engine.services;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Слой индекса сайта: таблица в памяти или сегмент на диске.
+ * Слой хранит все леммы записанных в него страниц, поэтому страница, записанная в более новый слой,
+ * скрывает свои записи в более старых.
+ */
+interface PostingLayer {
+
+    /**
+     * @return список страниц леммы или null, если леммы в слое нет
+     */
+    PostingList.Snapshot postings(String lemma);
+
+    /**
+     * Записана ли страница в этот слой (в том числе удалена из индекса).
+     */
+    boolean covers(int pageId);
+
+    /**
+     * В слой не записано ни одной страницы.
+     */
+    boolean isEmpty();
+
+    /**
+     * Находит в слое страницы, содержащие все леммы, и суммирует их ранги.
+     */
+    default ScoredPages match(Collection<String> lemmas) {
+        List<PostingList.Snapshot> lists = new ArrayList<>(lemmas.size());
+        for (String lemma : lemmas) {
+            PostingList.Snapshot snapshot = postings(lemma);
+            if (snapshot == null || snapshot.size() == 0) {
+                return ScoredPages.EMPTY;
+            }
+            lists.add(snapshot);
+        }
+        lists.sort(Comparator.comparingInt(PostingList.Snapshot::size));
+        return PostingList.intersect(lists);
+    }
+}
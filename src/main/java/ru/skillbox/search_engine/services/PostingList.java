@@ -0,0 +1,150 @@
+package ru.skillbox.search_engine.services;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Список страниц одной леммы: отсортированный массив id страниц и параллельный массив рангов.
+ * Запись синхронизирована; чтение идёт по неизменяемому снимку без блокировок.
+ * Добавление страницы с максимальным id дописывает элемент в свободную ёмкость массива,
+ * не затрагивая уже опубликованные снимки; вставка в середину и удаление копируют массивы,
+ * изменение ранга существующей страницы копирует массив рангов.
+ */
+final class PostingList {
+    private static final Snapshot EMPTY = new Snapshot(new int[0], new float[0], 0);
+
+    private volatile Snapshot snapshot = EMPTY;
+
+    synchronized void put(int pageId, float rank) {
+        Snapshot current = snapshot;
+        int size = current.size;
+        int pos = Arrays.binarySearch(current.pageIds, 0, size, pageId);
+        if (pos >= 0) {
+            float[] ranks = Arrays.copyOf(current.ranks, current.ranks.length);
+            ranks[pos] = rank;
+            snapshot = new Snapshot(current.pageIds, ranks, size);
+            return;
+        }
+        int insert = -pos - 1;
+        if (insert == size && size < current.pageIds.length) {
+            current.pageIds[size] = pageId;
+            current.ranks[size] = rank;
+            snapshot = new Snapshot(current.pageIds, current.ranks, size + 1);
+            return;
+        }
+        int capacity = Math.max(4, insert == size ? size * 2 : size + 1);
+        int[] pageIds = new int[capacity];
+        float[] ranks = new float[capacity];
+        System.arraycopy(current.pageIds, 0, pageIds, 0, insert);
+        System.arraycopy(current.ranks, 0, ranks, 0, insert);
+        pageIds[insert] = pageId;
+        ranks[insert] = rank;
+        System.arraycopy(current.pageIds, insert, pageIds, insert + 1, size - insert);
+        System.arraycopy(current.ranks, insert, ranks, insert + 1, size - insert);
+        snapshot = new Snapshot(pageIds, ranks, size + 1);
+    }
+
+    synchronized void remove(int pageId) {
+        Snapshot current = snapshot;
+        int size = current.size;
+        int pos = Arrays.binarySearch(current.pageIds, 0, size, pageId);
+        if (pos < 0) {
+            return;
+        }
+        int[] pageIds = new int[size - 1];
+        float[] ranks = new float[size - 1];
+        System.arraycopy(current.pageIds, 0, pageIds, 0, pos);
+        System.arraycopy(current.ranks, 0, ranks, 0, pos);
+        System.arraycopy(current.pageIds, pos + 1, pageIds, pos, size - pos - 1);
+        System.arraycopy(current.ranks, pos + 1, ranks, pos, size - pos - 1);
+        snapshot = new Snapshot(pageIds, ranks, size - 1);
+    }
+
+    int size() {
+        return snapshot.size;
+    }
+
+    Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Пересекает списки (AND) и суммирует ранги совпавших страниц за один проход.
+     * Обход начинается с самого короткого списка; позиция в остальных ищется экспоненциальным поиском,
+     * поэтому длинные списки не просматриваются целиком.
+     *
+     * @param lists непустые снимки, отсортированные по возрастанию размера
+     */
+    static ScoredPages intersect(List<Snapshot> lists) {
+        Snapshot rarest = lists.get(0);
+        int[] pageIds = Arrays.copyOf(rarest.pageIds, rarest.size);
+        float[] scores = Arrays.copyOf(rarest.ranks, rarest.size);
+        int size = rarest.size;
+        for (int l = 1; l < lists.size() && size > 0; l++) {
+            Snapshot list = lists.get(l);
+            int matched = 0;
+            int from = 0;
+            for (int i = 0; i < size && from < list.size; i++) {
+                int pos = lowerBound(list.pageIds, from, list.size, pageIds[i]);
+                if (pos < list.size && list.pageIds[pos] == pageIds[i]) {
+                    pageIds[matched] = pageIds[i];
+                    scores[matched] = scores[i] + list.ranks[pos];
+                    matched++;
+                    from = pos + 1;
+                } else {
+                    from = pos;
+                }
+            }
+            size = matched;
+        }
+        return new ScoredPages(pageIds, scores, size);
+    }
+
+    /**
+     * Первая позиция в [from, to), где значение не меньше key.
+     */
+    static int lowerBound(int[] values, int from, int to, int key) {
+        int lo = from;
+        int hi = from;
+        int step = 1;
+        while (hi < to && values[hi] < key) {
+            lo = hi + 1;
+            hi = from + step;
+            step <<= 1;
+        }
+        hi = Math.min(hi, to);
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (values[mid] < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    static final class Snapshot {
+        private final int[] pageIds;
+        private final float[] ranks;
+        private final int size;
+
+        Snapshot(int[] pageIds, float[] ranks, int size) {
+            this.pageIds = pageIds;
+            this.ranks = ranks;
+            this.size = size;
+        }
+
+        int size() {
+            return size;
+        }
+
+        int pageId(int i) {
+            return pageIds[i];
+        }
+
+        float rank(int i) {
+            return ranks[i];
+        }
+    }
+}
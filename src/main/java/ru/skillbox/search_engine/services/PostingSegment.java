@@ -0,0 +1,419 @@
+package ru.skillbox.search_engine.services;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.stream.IntStream;
+
+/**
+ * Неизменяемый сегмент индекса на диске, читаемый через {@link MappedByteBuffer}: данные лежат вне кучи,
+ * а открытие сегмента не читает файл целиком.
+ * <p>
+ * Формат файла: {@code MAGIC}, записи лемм, отсортированный массив id записанных в сегмент страниц,
+ * массив смещений записей в порядке лемм и в конце два int — число лемм и число страниц.
+ * Запись леммы: длина и байты UTF-8, число страниц, длина таблицы пропусков в байтах, таблица пропусков
+ * и пары «id страницы разностью от предыдущего, ранг»; все числа — varint.
+ * Таблица пропусков хранит для каждых {@value #SKIP_INTERVAL} пар последний id и длину блока в байтах,
+ * чтобы при пересечении перескакивать блоки без декодирования.
+ * Ранг страницы — число вхождений леммы, поэтому хранится целым.
+ * Размер сегмента ограничен 2 ГБ — пределом одного отображения файла.
+ */
+final class PostingSegment implements PostingLayer {
+    private static final int MAGIC = 0x53454731;
+    private static final int SKIP_INTERVAL = 32;
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final int lemmaCount;
+    private final int coveredCount;
+    private final int coveredStart;
+    private final int offsetsStart;
+
+    private PostingSegment(Path file, MappedByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+        int limit = buffer.limit();
+        if (limit < 12 || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a posting segment: " + file);
+        }
+        this.lemmaCount = buffer.getInt(limit - 8);
+        this.coveredCount = buffer.getInt(limit - 4);
+        this.offsetsStart = limit - 8 - 4 * lemmaCount;
+        this.coveredStart = offsetsStart - 4 * coveredCount;
+    }
+
+    static PostingSegment open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new PostingSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    Path file() {
+        return file;
+    }
+
+    int size() {
+        return buffer.limit();
+    }
+
+    int lemmaCount() {
+        return lemmaCount;
+    }
+
+    @Override
+    public PostingList.Snapshot postings(String lemma) {
+        int entry = find(lemma);
+        return entry < 0 ? null : decode(entry);
+    }
+
+    @Override
+    public boolean covers(int pageId) {
+        int lo = 0;
+        int hi = coveredCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int value = buffer.getInt(coveredStart + 4 * mid);
+            if (value < pageId) {
+                lo = mid + 1;
+            } else if (value > pageId) {
+                hi = mid - 1;
+            } else {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Сначала находит записи всех лемм: если какой-то нет, ни один список не читается.
+     * Самый короткий список распаковывается, остальные пересекаются с ним прямо в отображённом файле,
+     * без распаковки в массивы, пропуская блоки, в которые не попадает ни одна страница.
+     */
+    @Override
+    public ScoredPages match(Collection<String> lemmas) {
+        Integer[] entries = new Integer[lemmas.size()];
+        int n = 0;
+        for (String lemma : lemmas) {
+            int entry = find(lemma);
+            if (entry < 0) {
+                return ScoredPages.EMPTY;
+            }
+            entries[n++] = entry;
+        }
+        Arrays.sort(entries, Comparator.comparingInt(entry -> new Cursor(entry).next()));
+        PostingList.Snapshot rarest = decode(entries[0]);
+        int size = rarest.size();
+        int[] pageIds = new int[size];
+        float[] scores = new float[size];
+        for (int i = 0; i < size; i++) {
+            pageIds[i] = rarest.pageId(i);
+            scores[i] = rarest.rank(i);
+        }
+        for (int l = 1; l < n && size > 0; l++) {
+            size = intersect(entries[l], pageIds, scores, size);
+        }
+        return new ScoredPages(pageIds, scores, size);
+    }
+
+    /**
+     * Оставляет в первых {@code size} элементах массивов только страницы из записи и прибавляет их ранги.
+     *
+     * @return число оставшихся страниц
+     */
+    private int intersect(int entry, int[] pageIds, float[] scores, int size) {
+        Cursor skips = new Cursor(entry);
+        int count = skips.next();
+        int skipsLength = skips.next();
+        Cursor cursor = new Cursor(skips.position + skipsLength);
+        int matched = 0;
+        int candidate = 0;
+        int blockLast = 0;
+        for (int blockStart = 0; blockStart < count && candidate < size; blockStart += SKIP_INTERVAL) {
+            int pageId = blockLast;
+            blockLast += skips.next();
+            int blockEndPosition = cursor.position + skips.next();
+            int blockEnd = Math.min(count, blockStart + SKIP_INTERVAL);
+            for (int i = blockStart; i < blockEnd && candidate < size && pageIds[candidate] <= blockLast; i++) {
+                pageId += cursor.next();
+                int rank = cursor.next();
+                while (candidate < size && pageIds[candidate] < pageId) {
+                    candidate++;
+                }
+                if (candidate < size && pageIds[candidate] == pageId) {
+                    pageIds[matched] = pageId;
+                    scores[matched++] = scores[candidate++] + rank;
+                }
+            }
+            cursor.position = blockEndPosition;
+        }
+        return matched;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return coveredCount == 0;
+    }
+
+    int[] coveredPages() {
+        int[] pages = new int[coveredCount];
+        for (int i = 0; i < coveredCount; i++) {
+            pages[i] = buffer.getInt(coveredStart + 4 * i);
+        }
+        return pages;
+    }
+
+    String lemma(int index) {
+        Cursor cursor = new Cursor(buffer.getInt(offsetsStart + 4 * index));
+        byte[] bytes = new byte[cursor.next()];
+        buffer.get(cursor.position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Двоичный поиск по словарю лемм.
+     *
+     * @return позиция числа страниц в записи леммы или -1
+     */
+    private int find(String lemma) {
+        int lo = 0;
+        int hi = lemmaCount - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = lemma(mid).compareTo(lemma);
+            if (cmp < 0) {
+                lo = mid + 1;
+            } else if (cmp > 0) {
+                hi = mid - 1;
+            } else {
+                Cursor cursor = new Cursor(buffer.getInt(offsetsStart + 4 * mid));
+                int length = cursor.next();
+                return cursor.position + length;
+            }
+        }
+        return -1;
+    }
+
+    private PostingList.Snapshot decode(int entry) {
+        Cursor cursor = new Cursor(entry);
+        int count = cursor.next();
+        int skipsLength = cursor.next();
+        cursor.position += skipsLength;
+        int[] pageIds = new int[count];
+        float[] ranks = new float[count];
+        int pageId = 0;
+        for (int i = 0; i < count; i++) {
+            pageId += cursor.next();
+            pageIds[i] = pageId;
+            ranks[i] = cursor.next();
+        }
+        return new PostingList.Snapshot(pageIds, ranks, count);
+    }
+
+    /**
+     * Позиция последовательного чтения varint из отображённого файла.
+     */
+    private final class Cursor {
+        private int position;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+
+        int next() {
+            int value = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = buffer.get(position++);
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+        }
+    }
+
+    /**
+     * Сливает идущие подряд сегменты в один. Записи страницы берутся из самого нового сегмента, в который она записана;
+     * id страниц всех сегментов сохраняются, чтобы результат по-прежнему скрывал записи более старых сегментов.
+     *
+     * @param segments сегменты от нового к старому
+     */
+    static PostingSegment merge(List<PostingSegment> segments, Writer writer) throws IOException {
+        TreeSet<String> lemmas = new TreeSet<>();
+        for (PostingSegment segment : segments) {
+            for (int i = 0; i < segment.lemmaCount; i++) {
+                lemmas.add(segment.lemma(i));
+            }
+        }
+        for (String lemma : lemmas) {
+            List<long[]> parts = new ArrayList<>();
+            int total = 0;
+            for (int s = 0; s < segments.size(); s++) {
+                PostingList.Snapshot postings = segments.get(s).postings(lemma);
+                if (postings == null) {
+                    continue;
+                }
+                long[] part = new long[postings.size()];
+                int kept = 0;
+                for (int i = 0; i < postings.size(); i++) {
+                    int pageId = postings.pageId(i);
+                    if (!coveredByNewer(segments, s, pageId)) {
+                        part[kept++] = (long) pageId << 32 | Math.round(postings.rank(i));
+                    }
+                }
+                parts.add(Arrays.copyOf(part, kept));
+                total += kept;
+            }
+            long[] merged = new long[total];
+            int offset = 0;
+            for (long[] part : parts) {
+                System.arraycopy(part, 0, merged, offset, part.length);
+                offset += part.length;
+            }
+            Arrays.sort(merged);
+            int[] pageIds = new int[total];
+            float[] ranks = new float[total];
+            for (int i = 0; i < total; i++) {
+                pageIds[i] = (int) (merged[i] >>> 32);
+                ranks[i] = (int) merged[i];
+            }
+            writer.add(lemma, new PostingList.Snapshot(pageIds, ranks, total));
+        }
+        int[] covered = segments.stream()
+                .flatMapToInt(segment -> IntStream.of(segment.coveredPages()))
+                .sorted()
+                .distinct()
+                .toArray();
+        return writer.finish(covered);
+    }
+
+    private static boolean coveredByNewer(List<PostingSegment> segments, int index, int pageId) {
+        for (int s = 0; s < index; s++) {
+            if (segments.get(s).covers(pageId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Последовательная запись сегмента во временный файл, который после {@link #finish} переименовывается в целевой.
+     * Леммы передаются в порядке возрастания.
+     */
+    static final class Writer implements Closeable {
+        private final Path target;
+        private final Path temp;
+        private final FileOutputStream file;
+        private final DataOutputStream out;
+        private final ByteArrayOutputStream pairs = new ByteArrayOutputStream();
+        private final ByteArrayOutputStream skips = new ByteArrayOutputStream();
+        private int[] offsets = new int[1024];
+        private int lemmaCount;
+        private boolean finished;
+
+        Writer(Path target) throws IOException {
+            this.target = target;
+            this.temp = target.resolveSibling(target.getFileName() + ".tmp");
+            this.file = new FileOutputStream(temp.toFile());
+            this.out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16));
+            out.writeInt(MAGIC);
+        }
+
+        void add(String lemma, PostingList.Snapshot postings) throws IOException {
+            int size = postings.size();
+            if (size == 0) {
+                return;
+            }
+            if (lemmaCount == offsets.length) {
+                offsets = Arrays.copyOf(offsets, lemmaCount * 2);
+            }
+            offsets[lemmaCount++] = position();
+            byte[] bytes = lemma.getBytes(StandardCharsets.UTF_8);
+            writeVarint(out, bytes.length);
+            out.write(bytes);
+            writeVarint(out, size);
+            pairs.reset();
+            skips.reset();
+            int previous = 0;
+            int blockLast = 0;
+            int blockOffset = 0;
+            for (int i = 0; i < size; i++) {
+                writeVarint(pairs, postings.pageId(i) - previous);
+                writeVarint(pairs, Math.round(postings.rank(i)));
+                previous = postings.pageId(i);
+                if ((i + 1) % SKIP_INTERVAL == 0 || i == size - 1) {
+                    writeVarint(skips, previous - blockLast);
+                    writeVarint(skips, pairs.size() - blockOffset);
+                    blockLast = previous;
+                    blockOffset = pairs.size();
+                }
+            }
+            writeVarint(out, skips.size());
+            skips.writeTo(out);
+            pairs.writeTo(out);
+        }
+
+        /**
+         * Дописывает страницы сегмента и словарь, сбрасывает файл на диск и открывает готовый сегмент.
+         *
+         * @param covered отсортированные id всех записанных в сегмент страниц
+         */
+        PostingSegment finish(int[] covered) throws IOException {
+            for (int pageId : covered) {
+                out.writeInt(pageId);
+            }
+            for (int i = 0; i < lemmaCount; i++) {
+                out.writeInt(offsets[i]);
+            }
+            out.writeInt(lemmaCount);
+            out.writeInt(covered.length);
+            position();
+            out.flush();
+            file.getFD().sync();
+            out.close();
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            finished = true;
+            return open(target);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!finished) {
+                out.close();
+                Files.deleteIfExists(temp);
+            }
+        }
+
+        private int position() throws IOException {
+            int position = out.size();
+            if (position == Integer.MAX_VALUE) {
+                throw new IOException("Posting segment exceeds 2 GB: " + target);
+            }
+            return position;
+        }
+
+        private static void writeVarint(OutputStream out, int value) throws IOException {
+            while ((value & ~0x7F) != 0) {
+                out.write((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write(value);
+        }
+    }
+}
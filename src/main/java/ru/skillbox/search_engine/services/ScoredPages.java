@@ -0,0 +1,80 @@
+package ru.skillbox.search_engine.services;
+
+import java.util.List;
+import java.util.function.IntPredicate;
+
+/**
+ * Найденные страницы и их абсолютная релевантность в параллельных массивах.
+ */
+final class ScoredPages {
+    static final ScoredPages EMPTY = new ScoredPages(new int[0], new float[0], 0);
+
+    private final int[] pageIds;
+    private final float[] scores;
+    private final int size;
+
+    ScoredPages(int[] pageIds, float[] scores, int size) {
+        this.pageIds = pageIds;
+        this.scores = scores;
+        this.size = size;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int pageId(int i) {
+        return pageIds[i];
+    }
+
+    float score(int i) {
+        return scores[i];
+    }
+
+    float maxScore() {
+        float max = 0;
+        for (int i = 0; i < size; i++) {
+            max = Math.max(max, scores[i]);
+        }
+        return max;
+    }
+
+    /**
+     * Оставляет страницы, id которых удовлетворяют условию.
+     */
+    ScoredPages filter(IntPredicate keep) {
+        int[] keptIds = new int[size];
+        float[] keptScores = new float[size];
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (keep.test(pageIds[i])) {
+                keptIds[kept] = pageIds[i];
+                keptScores[kept] = scores[i];
+                kept++;
+            }
+        }
+        return kept == size ? this : new ScoredPages(keptIds, keptScores, kept);
+    }
+
+    /**
+     * Объединяет непересекающиеся результаты: по разным сайтам или по разным слоям индекса одного сайта.
+     */
+    static ScoredPages concat(List<ScoredPages> parts) {
+        if (parts.isEmpty()) {
+            return EMPTY;
+        }
+        if (parts.size() == 1) {
+            return parts.get(0);
+        }
+        int total = parts.stream().mapToInt(ScoredPages::size).sum();
+        int[] pageIds = new int[total];
+        float[] scores = new float[total];
+        int offset = 0;
+        for (ScoredPages part : parts) {
+            System.arraycopy(part.pageIds, 0, pageIds, offset, part.size);
+            System.arraycopy(part.scores, 0, scores, offset, part.size);
+            offset += part.size;
+        }
+        return new ScoredPages(pageIds, scores, total);
+    }
+}
@@ -0,0 +1,62 @@
+package ru.skillbox.search_engine.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.skillbox.search_engine.dto.SearchResults;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Кэш результатов поиска для окна выдачи. Ключ — отсортированные леммы запроса, сайт, окно
+ * и поколения индекса сайтов, по которым выполнялся поиск: после изменения индекса сайта
+ * прежние записи больше не запрашиваются и вытесняются как редко используемые (W-TinyLFU в Caffeine).
+ */
+@Component
+public class SearchResultCache {
+    private final Cache<Key, SearchResults> cache;
+
+    public SearchResultCache(MeterRegistry registry, @Value("${search-cache.max-size:1000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "search-results");
+    }
+
+    /**
+     * @param generations текущие поколения сайтов, по которым выполняется поиск
+     */
+    public static Key key(Collection<String> lemmas, String siteUrl, int offset, int limit,
+                          Map<Integer, Long> generations) {
+        return new Key(lemmas.stream().sorted().toList(), siteUrl, offset, limit, generations);
+    }
+
+    /**
+     * @return закэшированный результат или null
+     */
+    public SearchResults get(Key key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(Key key, SearchResults results) {
+        cache.put(key, results);
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public record Key(List<String> lemmas, String siteUrl, int offset, int limit, Map<Integer, Long> generations) {
+    }
+}
@@ -1,18 +1,22 @@
 package ru.skillbox.search_engine.services;
 
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
 import ru.skillbox.search_engine.dto.SearchResult;
-import ru.skillbox.search_engine.model.Index;
-import ru.skillbox.search_engine.model.Lemma;
-import ru.skillbox.search_engine.model.Page;
-import ru.skillbox.search_engine.repositories.IndexRepository;
-import ru.skillbox.search_engine.repositories.LemmaRepository;
+import ru.skillbox.search_engine.dto.SearchResults;
+import ru.skillbox.search_engine.dto.statistics.CacheStatistics;
+import ru.skillbox.search_engine.model.Site;
+import ru.skillbox.search_engine.repositories.PageContentRepository;
+import ru.skillbox.search_engine.repositories.PageRepository;
+import ru.skillbox.search_engine.repositories.SiteRepository;
+import ru.skillbox.search_engine.services.EngineMetrics.SearchPhase;
+import ru.skillbox.search_engine.util.HtmlExtractor;
+import ru.skillbox.search_engine.util.LemmaCounts;
 
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -20,8 +24,14 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class SearchService {
     private final LemmaService lemmaService;
-    private final LemmaRepository lemmaRepository;
-    private final IndexRepository indexRepository;
+    private final InvertedIndex invertedIndex;
+    private final PageRepository pageRepository;
+    private final PageContentRepository pageContentRepository;
+    private final SiteRepository siteRepository;
+    private final SearchResultCache searchResultCache;
+    private final IndexGenerations indexGenerations;
+    private final WordFormCache wordFormCache;
+    private final EngineMetrics engineMetrics;
 
     /**
      * Выполняет поиск по запросу для всех сайтов или конкретного сайта.
@@ -30,103 +40,203 @@ public class SearchService {
      * @param siteUrl URL сайта (опционально, если null — поиск по всем сайтам)
      * @param offset  Смещение для пагинации
      * @param limit   Лимит результатов на страницу
-     * @return Список результатов поиска
+     * @return Общее число найденных страниц и результаты для запрошенного окна
+     * @throws IllegalArgumentException если смещение отрицательное или лимит не положительный
      */
-    public List<SearchResult> search(String query, String siteUrl, int offset, int limit) {
-        Map<String, Integer> queryLemmas = lemmaService.getLemmasFromText(query);
+    public SearchResults search(String query, String siteUrl, int offset, int limit) {
+        if (offset < 0) {
+            throw new IllegalArgumentException("Offset must not be negative, got: " + offset);
+        }
+        if (limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive, got: " + limit);
+        }
+        long start = System.nanoTime();
+        LemmaCounts queryLemmas = lemmaService.getLemmasFromText(query);
+        engineMetrics.searchPhase(SearchPhase.LEMMAS, System.nanoTime() - start);
         if (queryLemmas.isEmpty()) {
-            return Collections.emptyList();
+            return SearchResults.empty();
         }
 
-        List<Lemma> lemmas = findLemmas(queryLemmas.keySet(), siteUrl);
-        if (lemmas.isEmpty()) {
-            return Collections.emptyList();
+        Collection<Integer> siteIds = findSiteIds(siteUrl);
+        SearchResultCache.Key key = SearchResultCache.key(queryLemmas.lemmas(), siteUrl, offset, limit,
+                indexGenerations.snapshot(siteIds));
+        SearchResults cached = searchResultCache.get(key);
+        if (cached != null) {
+            return cached;
         }
+        SearchResults results = rank(queryLemmas.lemmas(), siteIds, offset, limit);
+        searchResultCache.put(key, results);
+        return results;
+    }
 
-        lemmas.sort(Comparator.comparingInt(Lemma::getFrequency));
+    /**
+     * Статистика кэшей поиска: результатов запросов и словоформ.
+     */
+    public List<CacheStatistics> getCacheStatistics() {
+        return List.of(
+                cacheStatistics("search-results", searchResultCache.size(), searchResultCache.stats()),
+                cacheStatistics("word-forms", wordFormCache.size(), wordFormCache.stats()));
+    }
+
+    private CacheStatistics cacheStatistics(String name, long size, CacheStats stats) {
+        CacheStatistics statistics = new CacheStatistics();
+        statistics.setName(name);
+        statistics.setSize(size);
+        statistics.setHits(stats.hitCount());
+        statistics.setMisses(stats.missCount());
+        statistics.setHitRate(stats.hitRate());
+        statistics.setEvictions(stats.evictionCount());
+        return statistics;
+    }
+
+    /**
+     * Ранжирует страницы, содержащие все леммы запроса, и строит результаты для запрошенного окна.
+     */
+    private SearchResults rank(Collection<String> lemmas, Collection<Integer> siteIds, int offset, int limit) {
+        long start = System.nanoTime();
+        ScoredPages scored = findMatches(lemmas, siteIds);
+        start = phaseFinished(SearchPhase.MATCHING, start);
+        if (scored.size() == 0 || offset >= scored.size()) {
+            return new SearchResults(scored.size(), Collections.emptyList());
+        }
+        float maxRelevance = scored.maxScore();
 
-        List<Page> relevantPages = findRelevantPages(lemmas);
-        if (relevantPages.isEmpty()) {
-            return Collections.emptyList();
+        // В long: offset + limit при большом лимите переполняет int
+        int[] ranked = selectTop(scored, (int) Math.min((long) offset + limit, scored.size()));
+        List<Integer> windowIds = new ArrayList<>();
+        for (int i = offset; i < ranked.length; i++) {
+            windowIds.add(scored.pageId(ranked[i]));
         }
+        start = phaseFinished(SearchPhase.RANKING, start);
+        Map<Integer, PageRepository.SearchPage> pages = pageRepository.findSearchPagesByIdIn(windowIds).stream()
+                .collect(Collectors.toMap(PageRepository.SearchPage::getId, Function.identity()));
+        start = phaseFinished(SearchPhase.PAGES, start);
 
-        Map<Page, Float> relevanceMap = calculateRelevance(relevantPages, lemmas);
-        float maxRelevance = Collections.max(relevanceMap.values());
+        List<SearchResult> results = new ArrayList<>(windowIds.size());
+        for (int i = offset; i < ranked.length; i++) {
+            PageRepository.SearchPage page = pages.get(scored.pageId(ranked[i]));
+            if (page == null) {
+                continue;
+            }
+            String text = pageText(page);
+            String snippet = generateSnippet(text, lemmas);
+            String title = extractTitle(page, text);
+            String uri = page.getSiteUrl() + page.getPath().substring(1);
+            results.add(new SearchResult(uri, title, snippet, scored.score(ranked[i]) / maxRelevance));
+        }
+        phaseFinished(SearchPhase.SNIPPETS, start);
+        return new SearchResults(scored.size(), results);
+    }
 
-        return relevantPages.stream()
-                .map(page -> {
-                    float relativeRelevance = relevanceMap.get(page) / maxRelevance;
-                    String snippet = generateSnippet(page.getContent(), queryLemmas.keySet());
-                    String title = extractTitle(page.getContent());
-                    String uri = page.getSite().getUrl() + page.getPath().substring(1);
-                    return new SearchResult(uri, title, snippet, relativeRelevance);
-                })
-                .sorted(Comparator.comparingDouble(SearchResult::getRelevance).reversed())
-                .skip(offset)
-                .limit(limit)
-                .collect(Collectors.toList());
+    private long phaseFinished(SearchPhase phase, long start) {
+        long now = System.nanoTime();
+        engineMetrics.searchPhase(phase, now - start);
+        return now;
     }
 
     /**
-     * Находит леммы в базе данных по запросу и, опционально, по сайту.
+     * Выбирает k страниц с наибольшей релевантностью с помощью ограниченной кучи на массиве позиций,
+     * не сортируя весь список. При равной релевантности порядок определяется id страницы.
+     *
+     * @return позиции страниц в {@code scored} по убыванию релевантности
      */
-    private List<Lemma> findLemmas(Set<String> lemmaTexts, String siteUrl) {
-        if (siteUrl == null) {
-            return lemmaTexts.stream()
-                    .flatMap(text -> lemmaRepository.findAll().stream()
-                            .filter(lemma -> lemma.getLemma().equals(text)))
-                    .collect(Collectors.toList());
-        } else {
-            return lemmaTexts.stream()
-                    .flatMap(text -> lemmaRepository.findAll().stream()
-                            .filter(lemma -> lemma.getLemma().equals(text) && lemma.getSite().getUrl().equals(siteUrl)))
-                    .collect(Collectors.toList());
+    static int[] selectTop(ScoredPages scored, int k) {
+        int[] heap = new int[Math.max(0, Math.min(k, scored.size()))];
+        int size = 0;
+        for (int i = 0; i < scored.size() && heap.length > 0; i++) {
+            if (size < heap.length) {
+                heap[size] = i;
+                siftUp(scored, heap, size++);
+            } else if (ranksBelow(scored, heap[0], i)) {
+                heap[0] = i;
+                siftDown(scored, heap, 0, size);
+            }
+        }
+        for (int last = size - 1; last > 0; last--) {
+            int worst = heap[0];
+            heap[0] = heap[last];
+            heap[last] = worst;
+            siftDown(scored, heap, 0, last);
+        }
+        return heap;
+    }
+
+    private static void siftUp(ScoredPages scored, int[] heap, int index) {
+        int position = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!ranksBelow(scored, position, heap[parent])) {
+                break;
+            }
+            heap[index] = heap[parent];
+            index = parent;
         }
+        heap[index] = position;
+    }
+
+    private static void siftDown(ScoredPages scored, int[] heap, int index, int size) {
+        int position = heap[index];
+        int child;
+        while ((child = 2 * index + 1) < size) {
+            if (child + 1 < size && ranksBelow(scored, heap[child + 1], heap[child])) {
+                child++;
+            }
+            if (!ranksBelow(scored, heap[child], position)) {
+                break;
+            }
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = position;
+    }
+
+    /**
+     * Страница a ниже b в выдаче: меньше релевантность или при равной релевантности больше id.
+     */
+    private static boolean ranksBelow(ScoredPages scored, int a, int b) {
+        float scoreA = scored.score(a);
+        float scoreB = scored.score(b);
+        return scoreA < scoreB || scoreA == scoreB && scored.pageId(a) > scored.pageId(b);
     }
 
     /**
-     * Находит страницы, содержащие все леммы из списка.
+     * Определяет сайты для поиска: активные поколения всех сайтов или только сайта с указанным URL.
      */
-    private List<Page> findRelevantPages(List<Lemma> lemmas) {
-        log.info("Finding pages with at least one lemma from: {}", lemmas);
-        Set<Page> pages = new HashSet<>(); // Используем Set для уникальности
-        for (Lemma lemma : lemmas) {
-            List<Page> lemmaPages = indexRepository.findByLemma(lemma).stream()
-                    .map(Index::getPage)
-                    .collect(Collectors.toList());
-            log.info("Found {} pages for lemma '{}'", lemmaPages.size(), lemma);
-            pages.addAll(lemmaPages);
-        }
-        List<Page> result = new ArrayList<>(pages);
-        log.info("Total relevant pages: {}", result.size());
-        return result;
+    private Collection<Integer> findSiteIds(String siteUrl) {
+        Set<Integer> active = invertedIndex.getSiteIds();
+        if (siteUrl == null) {
+            return active;
+        }
+        return siteRepository.findAllByUrl(siteUrl).stream()
+                .map(Site::getId)
+                .filter(active::contains)
+                .collect(Collectors.toList());
     }
 
     /**
-     * Вычисляет абсолютную релевантность страниц.
+     * Находит на выбранных сайтах страницы, содержащие все леммы запроса.
      */
-    private Map<Page, Float> calculateRelevance(List<Page> pages, List<Lemma> lemmas) {
-        Map<Page, Float> relevanceMap = new HashMap<>();
-        for (Page page : pages) {
-            float absRelevance = 0;
-            for (Lemma lemma : lemmas) {
-                Optional<Index> index = indexRepository.findByPageAndLemma(page, lemma);
-                absRelevance += index.map(Index::getRank).orElse(0f);
+    private ScoredPages findMatches(Collection<String> lemmaTexts, Collection<Integer> siteIds) {
+        List<ScoredPages> matches = new ArrayList<>();
+        for (int siteId : siteIds) {
+            ScoredPages siteMatches = invertedIndex.match(siteId, lemmaTexts);
+            if (siteMatches.size() > 0) {
+                log.info("Found {} pages for lemmas {} on site {}", siteMatches.size(), lemmaTexts, siteId);
+                matches.add(siteMatches);
             }
-            relevanceMap.put(page, absRelevance);
         }
-        return relevanceMap;
+        return ScoredPages.concat(matches);
     }
 
     /**
      * Генерирует сниппет с выделением слов из запроса.
      */
-    private String generateSnippet(String content, Set<String> queryLemmas) {
-        String text = Jsoup.parse(content).text();
+    static String generateSnippet(String text, Collection<String> queryLemmas) {
         int snippetLength = 200;
+        String lowerText = text.toLowerCase();
 
         for (String lemma : queryLemmas) {
-            int index = text.toLowerCase().indexOf(lemma);
+            int index = lowerText.indexOf(lemma);
             if (index != -1) {
                 int start = Math.max(0, index - snippetLength / 2);
                 int end = Math.min(text.length(), start + snippetLength);
@@ -143,21 +253,31 @@ public class SearchService {
     }
 
     /**
-     * Извлекает заголовок страницы из HTML-контента.
+     * Возвращает заголовок страницы, сохранённый при индексации, или начало её текста.
      */
-    private String extractTitle(String content) {
-        try {
-            Document doc = Jsoup.parse(content);
-            String title = doc.title();
-            if (title != null && !title.trim().isEmpty()) {
-                return title.trim();
-            }
+    private String extractTitle(PageRepository.SearchPage page, String text) {
+        String title = page.getTitle();
+        if (title != null && !title.trim().isEmpty()) {
+            return title.trim();
+        }
+        return text.length() > 50 ? text.substring(0, 50) + "..." : text;
+    }
 
-            String text = doc.text();
-            return text.length() > 50 ? text.substring(0, 50) + "..." : text;
+    /**
+     * Текст страницы, сохранённый при индексации. Для страниц, проиндексированных
+     * до появления колонки text, он извлекается из HTML.
+     */
+    private String pageText(PageRepository.SearchPage page) {
+        if (page.getText() != null) {
+            return page.getText();
+        }
+        try {
+            return pageContentRepository.findContentByPageId(page.getId())
+                    .map(content -> HtmlExtractor.extract(content, "").text())
+                    .orElse("");
         } catch (Exception e) {
-            log.error("Error extracting title from content: {}", e.getMessage());
-            return "No title available";
+            log.error("Error extracting text from page {}: {}", page.getPath(), e.getMessage());
+            return "";
         }
     }
 }
\ No newline at end of file
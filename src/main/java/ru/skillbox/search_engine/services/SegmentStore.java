@@ -0,0 +1,171 @@
+package ru.skillbox.search_engine.services;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Каталог сегментов индекса.
+ * Файл manifest перечисляет сегменты каждого сайта от нового к старому и заменяется атомарным переименованием.
+ * Файл dirty существует, пока в памяти есть записи, которых нет в сегментах: если при старте он найден,
+ * сегменты считаются устаревшими и индекс перестраивается из index_table.
+ * Файл frequencies-pending существует, пока изменения частот лемм не записаны в базу
+ * ({@link LemmaFrequencies}): если при старте он найден, частоты пересчитываются.
+ */
+@Slf4j
+@Component
+public class SegmentStore {
+    private static final String MANIFEST = "manifest";
+    private static final String DIRTY = "dirty";
+    private static final String FREQUENCIES_PENDING = "frequencies-pending";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private final Path directory;
+    @Getter
+    private final int flushThreshold;
+    @Getter
+    private final int maxSegments;
+    private final AtomicLong sequence = new AtomicLong();
+
+    public SegmentStore(@Value("${index-segments.dir:data/index}") String directory,
+                        @Value("${index-segments.flush-threshold:200000}") int flushThreshold,
+                        @Value("${index-segments.max-segments:8}") int maxSegments) throws IOException {
+        this.directory = Path.of(directory);
+        this.flushThreshold = flushThreshold;
+        this.maxSegments = maxSegments;
+        Files.createDirectories(this.directory);
+        for (Path file : segmentFiles()) {
+            String name = file.getFileName().toString();
+            String number = name.substring(name.lastIndexOf('-') + 1, name.length() - SEGMENT_SUFFIX.length());
+            sequence.accumulateAndGet(Long.parseLong(number), Math::max);
+        }
+    }
+
+    /**
+     * Сегменты можно открыть без перестроения: манифест записан и после него индекс не менялся.
+     */
+    boolean isClean() {
+        return Files.exists(directory.resolve(MANIFEST)) && !Files.exists(directory.resolve(DIRTY));
+    }
+
+    void markDirty() throws IOException {
+        if (!Files.exists(directory.resolve(DIRTY))) {
+            Files.createFile(directory.resolve(DIRTY));
+        }
+    }
+
+    void markClean() throws IOException {
+        Files.deleteIfExists(directory.resolve(DIRTY));
+    }
+
+    boolean hasPendingFrequencies() {
+        return Files.exists(directory.resolve(FREQUENCIES_PENDING));
+    }
+
+    void markFrequenciesPending() throws IOException {
+        if (!Files.exists(directory.resolve(FREQUENCIES_PENDING))) {
+            Files.createFile(directory.resolve(FREQUENCIES_PENDING));
+        }
+    }
+
+    void markFrequenciesFlushed() throws IOException {
+        Files.deleteIfExists(directory.resolve(FREQUENCIES_PENDING));
+    }
+
+    /**
+     * @return имена файлов сегментов по id сайта, от нового к старому
+     */
+    Map<Integer, List<String>> readManifest() throws IOException {
+        Map<Integer, List<String>> manifest = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(directory.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length > 1) {
+                manifest.put(Integer.parseInt(fields[0]), List.of(Arrays.copyOfRange(fields, 1, fields.length)));
+            }
+        }
+        return manifest;
+    }
+
+    synchronized void writeManifest(Map<Integer, List<PostingSegment>> segments) throws IOException {
+        List<String> lines = new ArrayList<>();
+        segments.forEach((siteId, siteSegments) -> {
+            if (!siteSegments.isEmpty()) {
+                StringBuilder line = new StringBuilder().append(siteId);
+                siteSegments.forEach(segment -> line.append(' ').append(segment.file().getFileName()));
+                lines.add(line.toString());
+            }
+        });
+        Path temp = directory.resolve(MANIFEST + ".tmp");
+        Files.write(temp, lines, StandardCharsets.UTF_8);
+        Files.move(temp, directory.resolve(MANIFEST), StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    PostingSegment open(String name) throws IOException {
+        return PostingSegment.open(directory.resolve(name));
+    }
+
+    PostingSegment.Writer create(int siteId) throws IOException {
+        return new PostingSegment.Writer(directory.resolve("site-" + siteId + "-" + sequence.incrementAndGet() + SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Удаляет файлы сегментов. Отображения в память остаются действительными, пока их читают.
+     */
+    void delete(Collection<PostingSegment> segments) {
+        for (PostingSegment segment : segments) {
+            try {
+                Files.deleteIfExists(segment.file());
+            } catch (IOException e) {
+                log.warn("Failed to delete index segment {}: {}", segment.file(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Удаляет файлы сегментов, которых нет в списке, — оставшиеся от прерванных записей и слияний.
+     */
+    void retain(Set<String> names) throws IOException {
+        for (Path file : segmentFiles()) {
+            if (!names.contains(file.getFileName().toString())) {
+                Files.delete(file);
+            }
+        }
+        try (DirectoryStream<Path> temp = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX + ".tmp")) {
+            for (Path file : temp) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Удаляет все сегменты и манифест перед перестроением индекса.
+     */
+    void clear() throws IOException {
+        retain(Set.of());
+        Files.deleteIfExists(directory.resolve(MANIFEST));
+    }
+
+    private List<Path> segmentFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+}
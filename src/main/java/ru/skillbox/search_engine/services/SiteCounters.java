@@ -0,0 +1,105 @@
+package ru.skillbox.search_engine.services;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.skillbox.search_engine.dto.statistics.StageStatistics;
+import ru.skillbox.search_engine.repositories.LemmaRepository;
+import ru.skillbox.search_engine.repositories.PageRepository;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Счётчики страниц и лемм по сайтам и ход текущего обхода.
+ * Загружаются одним групповым запросом при старте и дальше обновляются при индексации,
+ * поэтому статистика не выполняет count по таблицам page и lemma.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SiteCounters {
+    private static final IntSupplier NO_QUEUE = () -> 0;
+
+    private final PageRepository pageRepository;
+    private final LemmaRepository lemmaRepository;
+
+    private final Map<Integer, Counters> sites = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        pageRepository.countPagesBySite().forEach(c -> counters(c.getSiteId()).pages.add(c.getCount()));
+        lemmaRepository.countLemmasBySite().forEach(c -> counters(c.getSiteId()).lemmas.add(c.getCount()));
+        log.info("Loaded page and lemma counters for {} sites", sites.size());
+    }
+
+    public void pageAdded(int siteId) {
+        counters(siteId).pages.increment();
+    }
+
+    public void lemmasAdded(int siteId, int count) {
+        if (count > 0) {
+            counters(siteId).lemmas.add(count);
+        }
+    }
+
+    /**
+     * Начинает отсчёт хода обхода сайта.
+     *
+     * @param queued текущая длина очереди URL сайта
+     */
+    void crawlStarted(int siteId, IntSupplier queued) {
+        Counters counters = counters(siteId);
+        counters.fetch = new PipelineStage.StageCounter();
+        counters.queued = queued;
+    }
+
+    void crawlFinished(int siteId) {
+        counters(siteId).queued = NO_QUEUE;
+    }
+
+    void pageFetched(int siteId) {
+        counters(siteId).fetch.processed();
+    }
+
+    void pageFailed(int siteId) {
+        counters(siteId).fetch.failed();
+    }
+
+    void siteRemoved(int siteId) {
+        sites.remove(siteId);
+    }
+
+    public long pages(int siteId) {
+        Counters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.pages.sum();
+    }
+
+    public long lemmas(int siteId) {
+        Counters counters = sites.get(siteId);
+        return counters == null ? 0 : counters.lemmas.sum();
+    }
+
+    /**
+     * Ход последнего обхода сайта: загружено, ошибок, в очереди и страниц в секунду.
+     */
+    public StageStatistics progress(int siteId) {
+        Counters counters = counters(siteId);
+        return counters.fetch.statistics("fetch", 0, counters.queued.getAsInt(), Integer.MAX_VALUE);
+    }
+
+    private Counters counters(int siteId) {
+        return sites.computeIfAbsent(siteId, id -> new Counters());
+    }
+
+    private static class Counters {
+        private final LongAdder pages = new LongAdder();
+        private final LongAdder lemmas = new LongAdder();
+        private volatile PipelineStage.StageCounter fetch = new PipelineStage.StageCounter();
+        private volatile IntSupplier queued = NO_QUEUE;
+    }
+}
@@ -0,0 +1,125 @@
+package ru.skillbox.search_engine.services;
+
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Индекс одного сайта — слои от нового к старому: текущая {@link MemTable}, замороженные таблицы,
+ * которые записываются на диск, и сегменты {@link PostingSegment}.
+ * Страница берётся из самого нового слоя, в который она записана, поэтому сегменты не переписываются при обновлении страниц.
+ * Список слоёв неизменяем и заменяется целиком, поиск читает его без блокировок.
+ */
+final class SiteIndex {
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private volatile List<PostingLayer> layers;
+
+    SiteIndex(List<PostingSegment> segments) {
+        List<PostingLayer> initial = new ArrayList<>();
+        initial.add(new MemTable());
+        initial.addAll(segments);
+        this.layers = List.copyOf(initial);
+    }
+
+    synchronized void addPage(int pageId, LemmaCounts lemmas) {
+        memTable().addPage(pageId, lemmas);
+    }
+
+    synchronized void addPosting(int pageId, String lemma, float rank) {
+        memTable().add(pageId, lemma, rank);
+    }
+
+    synchronized void removePage(int pageId, Collection<String> lemmas) {
+        memTable().removePage(pageId, lemmas);
+    }
+
+    int memTableSize() {
+        return memTable().size();
+    }
+
+    /**
+     * @return true, если сброс ещё не запрошен и его нужно запланировать
+     */
+    boolean requestFlush() {
+        return flushRequested.compareAndSet(false, true);
+    }
+
+    /**
+     * Замораживает текущую таблицу для записи на диск и начинает новую.
+     *
+     * @return замороженная таблица или null, если писать нечего
+     */
+    synchronized MemTable freeze() {
+        flushRequested.set(false);
+        MemTable current = memTable();
+        if (current.isEmpty()) {
+            return null;
+        }
+        List<PostingLayer> updated = new ArrayList<>(layers);
+        updated.add(0, new MemTable());
+        layers = List.copyOf(updated);
+        return current;
+    }
+
+    /**
+     * Заменяет слои записанным сегментом, который встаёт на место самого нового из них.
+     */
+    synchronized void replace(List<? extends PostingLayer> replaced, PostingSegment segment) {
+        List<PostingLayer> updated = new ArrayList<>(layers);
+        int position = updated.indexOf(replaced.get(0));
+        updated.removeAll(replaced);
+        updated.add(position, segment);
+        layers = List.copyOf(updated);
+    }
+
+    List<PostingSegment> segments() {
+        List<PostingSegment> segments = new ArrayList<>();
+        for (PostingLayer layer : layers) {
+            if (layer instanceof PostingSegment segment) {
+                segments.add(segment);
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * Все записи сайта лежат в сегментах на диске.
+     */
+    boolean isPersisted() {
+        List<PostingLayer> current = layers;
+        return memTable().isEmpty() && current.stream().filter(MemTable.class::isInstance).count() == 1;
+    }
+
+    ScoredPages match(Collection<String> lemmas) {
+        List<PostingLayer> current = layers;
+        List<ScoredPages> matches = new ArrayList<>();
+        List<PostingLayer> newer = new ArrayList<>();
+        for (PostingLayer layer : current) {
+            if (layer.isEmpty()) {
+                continue;
+            }
+            ScoredPages found = layer.match(lemmas);
+            if (found.size() > 0) {
+                matches.add(newer.isEmpty() ? found : found.filter(pageId -> !coveredByAny(newer, pageId)));
+            }
+            newer.add(layer);
+        }
+        return ScoredPages.concat(matches);
+    }
+
+    private static boolean coveredByAny(List<PostingLayer> layers, int pageId) {
+        for (PostingLayer layer : layers) {
+            if (layer.covers(pageId)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private MemTable memTable() {
+        return (MemTable) layers.get(0);
+    }
+}
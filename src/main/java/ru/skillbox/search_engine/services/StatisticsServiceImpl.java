@@ -4,52 +4,55 @@ package ru.skillbox.search_engine.services;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import ru.skillbox.search_engine.dto.statistics.DetailedStatisticsItem;
+import ru.skillbox.search_engine.dto.statistics.StageStatistics;
 import ru.skillbox.search_engine.dto.statistics.StatisticsData;
 import ru.skillbox.search_engine.dto.statistics.StatisticsResponse;
 import ru.skillbox.search_engine.dto.statistics.TotalStatistics;
 import ru.skillbox.search_engine.model.Site;
-import ru.skillbox.search_engine.repositories.LemmaRepository;
-import ru.skillbox.search_engine.repositories.PageRepository;
 import ru.skillbox.search_engine.repositories.SiteRepository;
 
 import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class StatisticsServiceImpl implements StatisticsService {
     private final SiteRepository siteRepository;
-    private final PageRepository pageRepository;
-    private final LemmaRepository lemmaRepository;
+    private final SiteCounters siteCounters;
+    private final IndexingService indexingService;
 
     public StatisticsResponse getStatistics() {
-        List<Site> sites = siteRepository.findAll();
-        int totalSites = sites.size();
-        long totalPages = pageRepository.count();
-        long totalLemmas = lemmaRepository.count();
-
-        TotalStatistics total = new TotalStatistics();
-        total.setSites(totalSites);
-        total.setPages(totalPages);
-        total.setLemmas(totalLemmas);
+        Collection<Site> sites = latestGenerations();
 
         List<DetailedStatisticsItem> detailed = sites.stream()
                 .map(site -> {
-                    long pages = pageRepository.countBySite(site);
-                    long lemmas = lemmaRepository.countBySite(site);
+                    StageStatistics progress = siteCounters.progress(site.getId());
                     var detailedStatisticsItem = new DetailedStatisticsItem();
                     detailedStatisticsItem.setUrl(site.getUrl());
                     detailedStatisticsItem.setName(site.getName());
                     detailedStatisticsItem.setStatus(site.getStatus().name());
                     detailedStatisticsItem.setStatusTime(site.getStatusTime().toEpochSecond(ZoneOffset.UTC));
                     detailedStatisticsItem.setError(site.getLastError() != null ? site.getLastError() : "");
-                    detailedStatisticsItem.setPages(pages);
-                    detailedStatisticsItem.setLemmas(lemmas);
+                    detailedStatisticsItem.setPages(siteCounters.pages(site.getId()));
+                    detailedStatisticsItem.setLemmas(siteCounters.lemmas(site.getId()));
+                    detailedStatisticsItem.setFetched(progress.getProcessed());
+                    detailedStatisticsItem.setFailed(progress.getFailed());
+                    detailedStatisticsItem.setQueued(progress.getQueueDepth());
+                    detailedStatisticsItem.setPagesPerSecond(progress.getThroughput());
                     return detailedStatisticsItem;
                 })
                 .collect(Collectors.toList());
 
+        TotalStatistics total = new TotalStatistics();
+        total.setSites(sites.size());
+        total.setPages(detailed.stream().mapToLong(DetailedStatisticsItem::getPages).sum());
+        total.setLemmas(detailed.stream().mapToLong(DetailedStatisticsItem::getLemmas).sum());
+        total.setIndexing(indexingService.isIndexing());
+
         StatisticsData statisticsData = new StatisticsData();
         statisticsData.setTotal(total);
         statisticsData.setDetailed(detailed);
@@ -58,4 +61,15 @@ public class StatisticsServiceImpl implements StatisticsService {
         response.setResult(true);
         return response;
     }
-}
\ No newline at end of file
+
+    /**
+     * Последнее поколение каждого сайта: во время полного обхода — новое, ещё не активное,
+     * чтобы статистика показывала ход обхода.
+     */
+    private Collection<Site> latestGenerations() {
+        return siteRepository.findAll().stream()
+                .collect(Collectors.toMap(Site::getUrl, Function.identity(),
+                        (a, b) -> a.getId() > b.getId() ? a : b, LinkedHashMap::new))
+                .values();
+    }
+}
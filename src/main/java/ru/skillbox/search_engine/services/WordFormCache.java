@@ -0,0 +1,52 @@
+package ru.skillbox.search_engine.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Function;
+
+/**
+ * Общий для всех потоков кэш «словоформа → лемма».
+ * Служебные и неизвестные слова кэшируются как пропуск, чтобы повторно не обращаться к морфологии.
+ */
+@Component
+public class WordFormCache {
+    private static final String SKIP = "";
+
+    private final Cache<String, String> cache;
+
+    public WordFormCache(MeterRegistry registry, @Value("${lemma-cache.max-size:100000}") long maxSize) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "word-forms");
+    }
+
+    /**
+     * Возвращает лемму словоформы, вычисляя её при промахе.
+     *
+     * @param resolver вычисляет лемму; null означает, что слово нужно пропустить
+     * @return лемма или null, если слово пропускается
+     */
+    public String getLemma(String word, Function<String, String> resolver) {
+        String lemma = cache.get(word, w -> {
+            String resolved = resolver.apply(w);
+            return resolved == null ? SKIP : resolved;
+        });
+        return SKIP.equals(lemma) ? null : lemma;
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+}
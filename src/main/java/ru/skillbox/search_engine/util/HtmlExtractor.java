@@ -0,0 +1,166 @@
+package ru.skillbox.search_engine.util;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.jsoup.nodes.Node;
+import org.jsoup.nodes.TextNode;
+import org.jsoup.parser.Parser;
+import org.jsoup.parser.StreamParser;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Однопроходное извлечение заголовка, видимого текста и ссылок из HTML без построения полного дерева.
+ * {@link StreamParser} отдаёт элементы по мере их закрытия. Всё, что в документе стоит до закрытого элемента,
+ * уже не изменится, поэтому его текст сразу дописывается в результат, а узлы удаляются из дерева.
+ * В памяти остаются только цепочка открытых элементов и собранный текст, а не узлы всей страницы.
+ * Текст совпадает с {@link Element#text()} для полного документа: пробелы схлопываются, блочные элементы
+ * отделяются пробелом, script и style пропускаются. Отличия: пробелы внутри pre и title не сохраняются,
+ * а после блочного элемента пробел ставится и перед строчным элементом.
+ */
+public final class HtmlExtractor {
+
+    public record Extract(String title, String text, List<String> links) {
+    }
+
+    private final StringBuilder text = new StringBuilder();
+    private final List<String> links = new ArrayList<>();
+    /**
+     * Открытые элементы, часть текста которых уже записана: пробел перед блоком ставится один раз.
+     */
+    private final Set<Element> started = Collections.newSetFromMap(new IdentityHashMap<>());
+    private String title;
+
+    private HtmlExtractor() {
+    }
+
+    public static Extract extract(String html, String baseUri) {
+        return extract(new StringReader(html), baseUri);
+    }
+
+    public static Extract extract(Reader html, String baseUri) {
+        HtmlExtractor extractor = new HtmlExtractor();
+        try (StreamParser parser = new StreamParser(Parser.htmlParser()).parse(html, baseUri)) {
+            Iterator<Element> elements = parser.iterator();
+            while (elements.hasNext()) {
+                extractor.closed(elements.next());
+            }
+        }
+        return extractor.result();
+    }
+
+    private void closed(Element element) {
+        if (element instanceof Document) {
+            return;
+        }
+        if (element.nameIs("a")) {
+            String href = element.absUrl("href");
+            if (!href.isEmpty()) {
+                links.add(href);
+            }
+        } else if (element.nameIs("title") && title == null) {
+            title = normalize(element.text());
+        }
+        flushBefore(element);
+        if (!started.remove(element) && (element.isBlock() || element.nameIs("br"))) {
+            space();
+        }
+        // Дочерние элементы уже удалены, остались текстовые и служебные узлы
+        for (Node child : element.childNodes()) {
+            append(child);
+        }
+        if (element.isBlock()) {
+            space();
+        }
+        element.remove();
+    }
+
+    /**
+     * Записывает и удаляет узлы, стоящие в документе до node: текст его предков перед ним.
+     */
+    private void flushBefore(Node node) {
+        Node parent = node.parentNode();
+        if (parent == null) {
+            return;
+        }
+        flushBefore(parent);
+        if (parent instanceof Element element && !(parent instanceof Document)
+                && started.add(element) && element.isBlock()) {
+            space();
+        }
+        Node first;
+        while ((first = parent.firstChild()) != node) {
+            append(first);
+            first.remove();
+        }
+    }
+
+    /**
+     * Элементы здесь встречаются, только если парсер закрыл их без события,
+     * например при исправлении неправильной вложенности тегов.
+     */
+    private void append(Node node) {
+        if (node instanceof TextNode textNode) {
+            appendNormalized(text, textNode.getWholeText());
+        } else if (node instanceof Element element) {
+            if (element.isBlock() || element.nameIs("br")) {
+                space();
+            }
+            for (Node child : element.childNodes()) {
+                append(child);
+            }
+            if (element.isBlock()) {
+                space();
+            }
+        }
+    }
+
+    private void space() {
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) != ' ') {
+            text.append(' ');
+        }
+    }
+
+    private Extract result() {
+        int length = text.length();
+        if (length > 0 && text.charAt(length - 1) == ' ') {
+            text.setLength(length - 1);
+        }
+        return new Extract(title == null ? "" : title, text.toString(), links);
+    }
+
+    private static String normalize(String value) {
+        StringBuilder builder = new StringBuilder(value.length());
+        appendNormalized(builder, value);
+        int length = builder.length();
+        if (length > 0 && builder.charAt(length - 1) == ' ') {
+            builder.setLength(length - 1);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Схлопывает пробельные символы в один пробел и пропускает невидимые, как jsoup.
+     */
+    private static void appendNormalized(StringBuilder builder, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == '\f' || c == '\r' || c == '\u00A0') {
+                int length = builder.length();
+                if (length > 0 && builder.charAt(length - 1) != ' ') {
+                    builder.append(' ');
+                }
+            } else if (c != '\u200B' && c != '\u00AD') {
+                builder.append(c);
+            }
+        }
+    }
+}
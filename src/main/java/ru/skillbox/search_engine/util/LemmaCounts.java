@@ -0,0 +1,116 @@
+package ru.skillbox.search_engine.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Счётчик лемм текста без упаковки чисел: хеш-таблица с открытой адресацией хранит номера записей,
+ * а сами леммы и их количества лежат плотными массивами в порядке первого появления.
+ * Обход идёт по номерам от 0 до {@link #size()}, номер леммы совпадает с позицией в {@link #lemmas()}.
+ */
+public final class LemmaCounts {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * Номер записи плюс один; ноль — пустая ячейка.
+     */
+    private int[] slots;
+    private String[] lemmas;
+    private int[] counts;
+    private int size;
+
+    public LemmaCounts() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LemmaCounts(int expectedSize) {
+        int capacity = Math.max(expectedSize, 1);
+        slots = new int[Integer.highestOneBit(capacity * 2 - 1) << 1];
+        lemmas = new String[capacity];
+        counts = new int[capacity];
+    }
+
+    public void increment(String lemma) {
+        add(lemma, 1);
+    }
+
+    public void add(String lemma, int count) {
+        int mask = slots.length - 1;
+        int slot = hash(lemma) & mask;
+        for (int entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if (lemmas[entry - 1].equals(lemma)) {
+                counts[entry - 1] += count;
+                return;
+            }
+        }
+        if (size == lemmas.length) {
+            lemmas = Arrays.copyOf(lemmas, size * 2);
+            counts = Arrays.copyOf(counts, size * 2);
+        }
+        lemmas[size] = lemma;
+        counts[size] = count;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * @return номер леммы или -1, если её нет
+     */
+    public int indexOf(String lemma) {
+        int mask = slots.length - 1;
+        for (int slot = hash(lemma) & mask, entry; (entry = slots[slot]) != 0; slot = (slot + 1) & mask) {
+            if (lemmas[entry - 1].equals(lemma)) {
+                return entry - 1;
+            }
+        }
+        return -1;
+    }
+
+    public int get(String lemma) {
+        int index = indexOf(lemma);
+        return index < 0 ? 0 : counts[index];
+    }
+
+    public String lemma(int index) {
+        return lemmas[index];
+    }
+
+    public int count(int index) {
+        return counts[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return неизменяемое представление лемм без копирования
+     */
+    public List<String> lemmas() {
+        return Collections.unmodifiableList(Arrays.asList(lemmas).subList(0, size));
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < size; i++) {
+            int slot = hash(lemmas[i]) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+    }
+
+    private static int hash(String lemma) {
+        int h = lemma.hashCode();
+        return h ^ (h >>> 16);
+    }
+}
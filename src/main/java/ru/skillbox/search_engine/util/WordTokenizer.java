@@ -0,0 +1,78 @@
+package ru.skillbox.search_engine.util;
+
+import java.util.Arrays;
+
+/**
+ * Однопроходный разбор текста на слова без регулярных выражений.
+ * Словом считается непрерывная последовательность букв; каждое слово приводится
+ * к нижнему регистру и классифицируется по алфавиту.
+ */
+public final class WordTokenizer {
+
+    public enum Script {
+        CYRILLIC, LATIN, MIXED
+    }
+
+    @FunctionalInterface
+    public interface TokenConsumer {
+        void accept(String word, Script script);
+    }
+
+    private static final int CYRILLIC_FLAG = 1;
+    private static final int LATIN_FLAG = 2;
+    private static final int OTHER_FLAG = 4;
+
+    private WordTokenizer() {
+    }
+
+    public static void tokenize(CharSequence text, TokenConsumer consumer) {
+        char[] buffer = new char[32];
+        int length = 0;
+        int flags = 0;
+        int i = 0;
+        int end = text.length();
+        while (i < end) {
+            int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+
+            if (!Character.isLetter(codePoint)) {
+                if (length > 0) {
+                    consumer.accept(new String(buffer, 0, length), scriptOf(flags));
+                    length = 0;
+                    flags = 0;
+                }
+                continue;
+            }
+
+            int lower = Character.toLowerCase(codePoint);
+            flags |= classify(lower);
+            if (length + 2 > buffer.length) {
+                buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }
+            length += Character.toChars(lower, buffer, length);
+        }
+        if (length > 0) {
+            consumer.accept(new String(buffer, 0, length), scriptOf(flags));
+        }
+    }
+
+    private static int classify(int lower) {
+        if ((lower >= 'а' && lower <= 'я') || lower == 'ё') {
+            return CYRILLIC_FLAG;
+        }
+        if (lower >= 'a' && lower <= 'z') {
+            return LATIN_FLAG;
+        }
+        return OTHER_FLAG;
+    }
+
+    private static Script scriptOf(int flags) {
+        if (flags == CYRILLIC_FLAG) {
+            return Script.CYRILLIC;
+        }
+        if (flags == LATIN_FLAG) {
+            return Script.LATIN;
+        }
+        return Script.MIXED;
+    }
+}
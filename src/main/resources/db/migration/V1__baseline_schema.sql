@@ -0,0 +1,92 @@
+-- Схема, которую раньше создавал Hibernate (ddl-auto: update).
+-- Все операции идемпотентны: на базе, созданной прежними версиями приложения,
+-- миграция только добавляет недостающие таблицы, колонки и ограничения.
+-- Колонки, появившиеся позже первых версий таблиц, добавляются отдельными ALTER TABLE.
+
+CREATE TABLE IF NOT EXISTS site (
+    id          integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    last_error  varchar(255),
+    name        varchar(255) NOT NULL,
+    status      varchar(255) NOT NULL CHECK (status IN ('INDEXING', 'INDEXED', 'FAILED')),
+    status_time timestamp(6) NOT NULL,
+    url         text NOT NULL
+);
+ALTER TABLE site ADD COLUMN IF NOT EXISTS active boolean DEFAULT true NOT NULL;
+
+CREATE SEQUENCE IF NOT EXISTS page_sequence START WITH 1 INCREMENT BY 1;
+
+CREATE TABLE IF NOT EXISTS page (
+    id      integer NOT NULL PRIMARY KEY,
+    code    integer NOT NULL,
+    path    text NOT NULL,
+    site_id integer NOT NULL
+);
+ALTER TABLE page ADD COLUMN IF NOT EXISTS content_hash varchar(64);
+ALTER TABLE page ADD COLUMN IF NOT EXISTS etag varchar(255);
+ALTER TABLE page ADD COLUMN IF NOT EXISTS last_modified varchar(255);
+ALTER TABLE page ADD COLUMN IF NOT EXISTS text text;
+ALTER TABLE page ADD COLUMN IF NOT EXISTS title text;
+
+CREATE TABLE IF NOT EXISTS page_content (
+    page_id integer NOT NULL PRIMARY KEY,
+    content text NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS lemma (
+    id        integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    frequency integer NOT NULL,
+    lemma     varchar(255) NOT NULL,
+    site_id   integer NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS index_table (
+    id       integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    rank     float4 NOT NULL,
+    lemma_id integer NOT NULL,
+    page_id  integer NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS crawl_url (
+    id      integer GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    done    boolean NOT NULL,
+    url     text NOT NULL,
+    site_id integer NOT NULL
+);
+
+-- Первые версии хранили HTML в page.content; он переносится в page_content
+DO $$
+BEGIN
+    IF EXISTS (SELECT 1 FROM information_schema.columns
+               WHERE table_schema = current_schema() AND table_name = 'page' AND column_name = 'content') THEN
+        INSERT INTO page_content (page_id, content)
+        SELECT id, content FROM page WHERE content IS NOT NULL
+        ON CONFLICT (page_id) DO NOTHING;
+        ALTER TABLE page DROP COLUMN content;
+    END IF;
+END $$;
+
+-- Имена ограничений совпадают с теми, что генерировал Hibernate
+DO $$
+BEGIN
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'uk7ogalxpu2t6pogbj8sbbpk0of') THEN
+        ALTER TABLE lemma ADD CONSTRAINT uk7ogalxpu2t6pogbj8sbbpk0of UNIQUE (site_id, lemma);
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'ukcxap8wfahap4rah1a6leptihd') THEN
+        ALTER TABLE crawl_url ADD CONSTRAINT ukcxap8wfahap4rah1a6leptihd UNIQUE (site_id, url);
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkg0x7p826f7l8ahw2uavbws7cn') THEN
+        ALTER TABLE crawl_url ADD CONSTRAINT fkg0x7p826f7l8ahw2uavbws7cn FOREIGN KEY (site_id) REFERENCES site;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fk2mxkags0kyprqxhhew7mo7cyn') THEN
+        ALTER TABLE index_table ADD CONSTRAINT fk2mxkags0kyprqxhhew7mo7cyn FOREIGN KEY (lemma_id) REFERENCES lemma;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fk1pagf7w9xbfmgqgfe7xlpkinv') THEN
+        ALTER TABLE index_table ADD CONSTRAINT fk1pagf7w9xbfmgqgfe7xlpkinv FOREIGN KEY (page_id) REFERENCES page;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkfbq251d28jauqlxirb1k2cjag') THEN
+        ALTER TABLE lemma ADD CONSTRAINT fkfbq251d28jauqlxirb1k2cjag FOREIGN KEY (site_id) REFERENCES site;
+    END IF;
+    IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'fkj2jx0gqa4h7wg8ls0k3y221h2') THEN
+        ALTER TABLE page ADD CONSTRAINT fkj2jx0gqa4h7wg8ls0k3y221h2 FOREIGN KEY (site_id) REFERENCES site;
+    END IF;
+END $$;
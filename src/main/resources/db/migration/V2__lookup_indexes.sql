@@ -0,0 +1,23 @@
+-- Индексы под поиск страниц и лемм по сайту.
+
+-- Без уникального индекса параллельные обходы могли сохранить один путь дважды: остаётся последняя копия
+CREATE TEMPORARY TABLE duplicate_page ON COMMIT DROP AS
+SELECT p.id FROM page p
+WHERE EXISTS (SELECT 1 FROM page newer WHERE newer.site_id = p.site_id AND newer.path = p.path AND newer.id > p.id);
+
+DELETE FROM index_table WHERE page_id IN (SELECT id FROM duplicate_page);
+DELETE FROM page_content WHERE page_id IN (SELECT id FROM duplicate_page);
+DELETE FROM page WHERE id IN (SELECT id FROM duplicate_page);
+
+UPDATE lemma SET frequency = counted.frequency
+FROM (SELECT lemma.id, count(index_table.lemma_id) AS frequency
+      FROM lemma LEFT JOIN index_table ON index_table.lemma_id = lemma.id
+      GROUP BY lemma.id) AS counted
+WHERE lemma.id = counted.id AND lemma.frequency <> counted.frequency
+  AND EXISTS (SELECT 1 FROM duplicate_page);
+
+ALTER TABLE page ADD CONSTRAINT page_site_id_path_key UNIQUE (site_id, path);
+
+-- Уникальность (site_id, lemma) с id в листьях: поиск id лемм страницы читает только индекс
+ALTER TABLE lemma DROP CONSTRAINT uk7ogalxpu2t6pogbj8sbbpk0of;
+ALTER TABLE lemma ADD CONSTRAINT lemma_site_id_lemma_key UNIQUE (site_id, lemma) INCLUDE (id);
@@ -0,0 +1,49 @@
+-- index_table разбивается по сайтам: у каждой строки site своя секция index_table_<id>.
+-- Удаление поколения сайта удаляет секцию целиком, а запись и удаление страниц затрагивают одну секцию.
+
+ALTER TABLE index_table RENAME TO index_table_unpartitioned;
+ALTER INDEX index_table_pkey RENAME TO index_table_unpartitioned_pkey;
+
+CREATE TABLE index_table (
+    id       integer GENERATED BY DEFAULT AS IDENTITY,
+    site_id  integer NOT NULL,
+    page_id  integer NOT NULL REFERENCES page,
+    lemma_id integer NOT NULL REFERENCES lemma,
+    rank     float4 NOT NULL,
+    PRIMARY KEY (page_id, lemma_id, site_id)
+) PARTITION BY LIST (site_id);
+
+CREATE INDEX index_table_lemma_id_idx ON index_table (lemma_id) INCLUDE (page_id, rank);
+
+CREATE FUNCTION create_index_partition(site integer) RETURNS void LANGUAGE plpgsql AS $$
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF index_table FOR VALUES IN (%s)',
+                   'index_table_' || site, site);
+END $$;
+
+CREATE FUNCTION site_created() RETURNS trigger LANGUAGE plpgsql AS $$
+BEGIN
+    PERFORM create_index_partition(NEW.id);
+    RETURN NEW;
+END $$;
+
+CREATE TRIGGER site_index_partition AFTER INSERT ON site
+    FOR EACH ROW EXECUTE FUNCTION site_created();
+
+SELECT create_index_partition(id) FROM site;
+
+INSERT INTO index_table (id, site_id, page_id, lemma_id, rank)
+SELECT i.id, p.site_id, i.page_id, i.lemma_id, i.rank
+FROM index_table_unpartitioned i JOIN page p ON p.id = i.page_id
+ON CONFLICT DO NOTHING;
+
+DROP TABLE index_table_unpartitioned;
+
+-- Повторы (page_id, lemma_id) из старой таблицы не перенесены; частоты пересчитываются по оставшимся записям
+UPDATE lemma SET frequency = counted.frequency
+FROM (SELECT lemma.id, count(index_table.lemma_id) AS frequency
+      FROM lemma LEFT JOIN index_table ON index_table.lemma_id = lemma.id
+      GROUP BY lemma.id) AS counted
+WHERE lemma.id = counted.id AND lemma.frequency <> counted.frequency;
+
+SELECT setval(pg_get_serial_sequence('index_table', 'id'), max(id)) FROM index_table HAVING max(id) IS NOT NULL;
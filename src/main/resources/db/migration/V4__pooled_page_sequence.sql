@@ -0,0 +1,3 @@
+-- Hibernate резервирует id страниц блоками по 50 (оптимизатор pooled): одно обращение к последовательности
+-- на 50 вставок. Шаг последовательности должен совпадать с allocationSize в Page.
+ALTER SEQUENCE page_sequence INCREMENT BY 50;
@@ -0,0 +1,78 @@
+package ru.skillbox.search_engine.services;
+
+import org.junit.jupiter.api.Test;
+import ru.skillbox.search_engine.config.SitesList;
+import ru.skillbox.search_engine.model.Site;
+import ru.skillbox.search_engine.model.Status;
+import ru.skillbox.search_engine.repositories.CrawlCheckpointRepository;
+import ru.skillbox.search_engine.repositories.PageContentRepository;
+import ru.skillbox.search_engine.repositories.PageRepository;
+import ru.skillbox.search_engine.repositories.SiteGenerationRepository;
+import ru.skillbox.search_engine.repositories.SiteRepository;
+
+import java.net.ConnectException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IndexingServiceTest {
+    private static final String URL = "http://site.test/";
+    private static final int NEW_GENERATION = 2;
+
+    @Test
+    void unreachableRootKeepsPreviousGeneration() throws Exception {
+        SitesList.Site configSite = new SitesList.Site();
+        configSite.setUrl(URL);
+        configSite.setName("Test");
+        configSite.setRequestsPerSecond(1000);
+        SitesList sitesList = new SitesList();
+        sitesList.setSites(List.of(configSite));
+        sitesList.setCrawlWorkers(2);
+        sitesList.setCheckpointInterval(Duration.ofMillis(50));
+
+        // Сохранённые состояния сайта: объект один и тот же, поэтому запоминается копия статуса
+        List<Status> savedStatuses = new ArrayList<>();
+        SiteRepository siteRepository = mock(SiteRepository.class);
+        when(siteRepository.save(any(Site.class))).thenAnswer(invocation -> {
+            Site site = invocation.getArgument(0);
+            site.setId(NEW_GENERATION);
+            savedStatuses.add(site.getStatus());
+            return site;
+        });
+        SiteGenerationRepository siteGenerationRepository = mock(SiteGenerationRepository.class);
+        when(siteGenerationRepository.hasActive(URL)).thenReturn(true);
+        PageRepository pageRepository = mock(PageRepository.class);
+        PageFetcher pageFetcher = mock(PageFetcher.class);
+        when(pageFetcher.fetch(anyString(), anyDouble())).thenThrow(new ConnectException("Connection refused"));
+        InvertedIndex invertedIndex = mock(InvertedIndex.class);
+
+        IndexingService indexingService = new IndexingService(sitesList, siteRepository, pageRepository,
+                mock(PageContentRepository.class), mock(LemmaService.class), mock(WordFormCache.class),
+                pageFetcher, mock(IndexingPipeline.class), mock(IndexGenerations.class), mock(SiteCounters.class),
+                mock(CrawlCheckpointRepository.class), siteGenerationRepository, invertedIndex,
+                mock(LemmaFrequencies.class));
+        indexingService.startIndexing(false);
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (indexingService.isIndexing() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertFalse(indexingService.isIndexing());
+        verify(pageFetcher).fetch(URL, 1000);
+        verify(siteGenerationRepository, never()).activate(anyInt(), anyString());
+        verify(siteGenerationRepository, never()).delete(any());
+        verify(invertedIndex, never()).activate(anyInt(), any());
+        assertEquals(Status.FAILED, savedStatuses.get(savedStatuses.size() - 1));
+    }
+}
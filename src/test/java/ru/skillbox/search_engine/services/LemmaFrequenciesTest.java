@@ -0,0 +1,144 @@
+package ru.skillbox.search_engine.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.skillbox.search_engine.repositories.IndexJdbcRepository;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LemmaFrequenciesTest {
+
+    @TempDir
+    Path directory;
+
+    private final StubRepository repository = new StubRepository();
+    private SegmentStore segmentStore;
+    private LemmaFrequencies frequencies;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        segmentStore = new SegmentStore(directory.toString(), 1000, 8);
+        frequencies = new LemmaFrequencies(repository, segmentStore, Duration.ofHours(1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        frequencies.close();
+    }
+
+    @Test
+    void opposingDeltasCancelBeforeWrite() {
+        frequencies.add(new int[]{1, 2}, -1);
+        frequencies.add(new int[]{3}, 1);
+        frequencies.add(new int[]{2, 1}, 1);
+        assertTrue(segmentStore.hasPendingFrequencies());
+
+        frequencies.flush();
+        assertEquals(1, repository.writes.size());
+        assertArrayEquals(new int[]{3}, repository.writes.get(0)[0]);
+        assertArrayEquals(new int[]{1}, repository.writes.get(0)[1]);
+        assertFalse(segmentStore.hasPendingFrequencies());
+
+        frequencies.add(new int[]{4}, -1);
+        frequencies.add(new int[]{4}, 1);
+        frequencies.flush();
+        assertEquals(1, repository.writes.size());
+        assertFalse(segmentStore.hasPendingFrequencies());
+    }
+
+    @Test
+    void failedWriteRequeuesDeltas() {
+        frequencies.add(new int[]{5, 4}, 2);
+        repository.failures = 1;
+        frequencies.flush();
+        assertTrue(repository.writes.isEmpty());
+        assertTrue(segmentStore.hasPendingFrequencies());
+
+        frequencies.add(new int[]{4}, 1);
+        frequencies.flush();
+        assertEquals(1, repository.writes.size());
+        assertArrayEquals(new int[]{4, 5}, repository.writes.get(0)[0]);
+        assertArrayEquals(new int[]{3, 2}, repository.writes.get(0)[1]);
+        assertFalse(segmentStore.hasPendingFrequencies());
+    }
+
+    @Test
+    void markerStaysUntilTransactionCompletesAndDeltasAreWritten() {
+        TransactionSynchronizationManager.initSynchronization();
+        frequencies.addAfterCommit(new int[]{7}, 1);
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        assertTrue(segmentStore.hasPendingFrequencies());
+
+        // Транзакция ещё не зафиксирована: записывать нечего, но отметка остаётся
+        frequencies.flush();
+        assertTrue(repository.writes.isEmpty());
+        assertTrue(segmentStore.hasPendingFrequencies());
+
+        synchronizations.forEach(TransactionSynchronization::afterCommit);
+        frequencies.flush();
+        assertEquals(1, repository.writes.size());
+        assertTrue(segmentStore.hasPendingFrequencies());
+
+        synchronizations.forEach(s -> s.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        frequencies.add(new int[]{8}, 1);
+        repository.failures = 1;
+        frequencies.flush();
+        assertTrue(segmentStore.hasPendingFrequencies());
+
+        frequencies.flush();
+        assertEquals(2, repository.writes.size());
+        assertFalse(segmentStore.hasPendingFrequencies());
+    }
+
+    @Test
+    void markerFromPreviousRunIsKeptUntilRecount() throws IOException {
+        segmentStore.markFrequenciesPending();
+        frequencies = new LemmaFrequencies(repository, segmentStore, Duration.ofHours(1));
+        frequencies.recountIfInterrupted();
+        assertEquals(1, repository.recounts);
+        assertFalse(segmentStore.hasPendingFrequencies());
+    }
+
+    private static class StubRepository extends IndexJdbcRepository {
+        final List<int[][]> writes = new ArrayList<>();
+        int failures;
+        int recounts;
+
+        StubRepository() {
+            super(null);
+        }
+
+        @Override
+        public void addFrequencies(int[] lemmaIds, int[] deltas) {
+            if (failures > 0) {
+                failures--;
+                throw new DataAccessResourceFailureException("database unavailable");
+            }
+            writes.add(new int[][]{lemmaIds, deltas});
+        }
+
+        @Override
+        public int recountFrequencies() {
+            recounts++;
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ru.skillbox.search_engine.services;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ru.skillbox.search_engine.config.AppConfig;
+import ru.skillbox.search_engine.config.CrawlerHttpSettings;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+class PageFetcherTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private HttpServer server;
+    private PageFetcher pageFetcher;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/fast", exchange -> {
+            byte[] body = "<p>страница</p>".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/html; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        // Заголовки и начало тела приходят сразу, остаток тела — никогда
+        server.createContext("/slow", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/html");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            out.write("<p>начало".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        server.start();
+
+        CrawlerHttpSettings settings = new CrawlerHttpSettings();
+        settings.setReadTimeout(Duration.ofMillis(500));
+        pageFetcher = new PageFetcher(new AppConfig().crawlerHttpClient(settings), settings,
+                new HostRateLimiter(), new EngineMetrics(new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        server.stop(0);
+    }
+
+    @Test
+    void readsBody() throws Exception {
+        assertEquals("<p>страница</p>", pageFetcher.fetch(url("/fast"), 100).body());
+    }
+
+    @Test
+    void slowBodyFailsAfterReadTimeout() {
+        assertTimeoutPreemptively(Duration.ofSeconds(5),
+                () -> assertThrows(HttpTimeoutException.class, () -> pageFetcher.fetch(url("/slow"), 100)));
+    }
+
+    private String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+}
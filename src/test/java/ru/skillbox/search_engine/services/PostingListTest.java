@@ -0,0 +1,65 @@
+package ru.skillbox.search_engine.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PostingListTest {
+
+    @Test
+    void keepsPagesSortedAcrossUpdates() {
+        PostingList list = new PostingList();
+        for (int pageId : new int[]{5, 1, 9, 3, 12, 7}) {
+            list.put(pageId, pageId);
+        }
+        list.put(3, 30);
+        list.remove(9);
+        ScoredPages pages = PostingList.intersect(List.of(list.snapshot()));
+        assertEquals(5, pages.size());
+        int[] expected = {1, 3, 5, 7, 12};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], pages.pageId(i));
+        }
+        assertEquals(30f, pages.score(1));
+    }
+
+    @Test
+    void rankUpdateDoesNotChangePublishedSnapshot() {
+        PostingList list = new PostingList();
+        list.put(1, 1);
+        list.put(2, 2);
+        PostingList.Snapshot before = list.snapshot();
+        list.put(2, 20);
+        assertEquals(2f, before.rank(1));
+        assertEquals(20f, list.snapshot().rank(1));
+    }
+
+    @Test
+    void intersectsAndSumsRanks() {
+        PostingList rare = new PostingList();
+        PostingList common = new PostingList();
+        for (int pageId = 1; pageId <= 1000; pageId++) {
+            common.put(pageId, 1);
+        }
+        rare.put(10, 2);
+        rare.put(500, 3);
+        rare.put(2000, 4);
+        ScoredPages pages = PostingList.intersect(List.of(rare.snapshot(), common.snapshot()));
+        assertEquals(2, pages.size());
+        assertEquals(10, pages.pageId(0));
+        assertEquals(3f, pages.score(0));
+        assertEquals(500, pages.pageId(1));
+        assertEquals(4f, pages.score(1));
+    }
+
+    @Test
+    void lowerBoundGallopsFromPosition() {
+        int[] values = {2, 4, 6, 8, 10, 12, 14};
+        assertEquals(0, PostingList.lowerBound(values, 0, values.length, 1));
+        assertEquals(3, PostingList.lowerBound(values, 1, values.length, 7));
+        assertEquals(6, PostingList.lowerBound(values, 2, values.length, 14));
+        assertEquals(7, PostingList.lowerBound(values, 0, values.length, 15));
+    }
+}
@@ -0,0 +1,92 @@
+package ru.skillbox.search_engine.services;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ru.skillbox.search_engine.util.LemmaCounts;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PostingSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void roundTripsPostingsThroughFile() throws IOException {
+        MemTable table = new MemTable();
+        table.addPage(3, counts("дом", 2, "book", 1));
+        table.addPage(1000, counts("дом", 5));
+        table.addPage(70000, counts("дом", 300, "book", 4));
+        table.removePage(42, List.of("дом"));
+
+        PostingSegment segment = write(table, "a.seg");
+        assertEquals(2, segment.lemmaCount());
+        assertNull(segment.postings("кот"));
+        PostingList.Snapshot postings = segment.postings("дом");
+        assertEquals(3, postings.size());
+        assertEquals(70000, postings.pageId(2));
+        assertEquals(300f, postings.rank(2));
+        assertTrue(segment.covers(42));
+        assertFalse(segment.covers(43));
+
+        ScoredPages both = segment.match(List.of("дом", "book"));
+        assertEquals(2, both.size());
+        assertEquals(3, both.pageId(0));
+        assertEquals(304f, both.score(1));
+    }
+
+    @Test
+    void newerLayersHideUpdatedPages() throws IOException {
+        MemTable old = new MemTable();
+        old.addPage(1, counts("дом", 1));
+        old.addPage(2, counts("дом", 1));
+        old.addPage(3, counts("дом", 1));
+        MemTable updates = new MemTable();
+        updates.removePage(1, List.of());
+        updates.addPage(2, counts("дом", 7));
+
+        List<PostingSegment> segments = List.of(write(updates, "b.seg"), write(old, "a.seg"));
+        SiteIndex index = new SiteIndex(segments);
+        index.addPage(3, counts("кот", 1));
+        assertEquals(Set.of(2), pages(index.match(List.of("дом"))));
+
+        try (PostingSegment.Writer writer = new PostingSegment.Writer(directory.resolve("merged.seg"))) {
+            PostingSegment merged = PostingSegment.merge(segments, writer);
+            ScoredPages pages = merged.match(List.of("дом"));
+            assertEquals(Set.of(2, 3), pages(pages));
+            assertEquals(7f, pages.score(0));
+            assertTrue(merged.covers(1));
+        }
+    }
+
+    private PostingSegment write(MemTable table, String name) throws IOException {
+        try (PostingSegment.Writer writer = new PostingSegment.Writer(directory.resolve(name))) {
+            return table.writeTo(writer);
+        }
+    }
+
+    private static LemmaCounts counts(Object... lemmaCounts) {
+        LemmaCounts counts = new LemmaCounts();
+        for (int i = 0; i < lemmaCounts.length; i += 2) {
+            counts.add((String) lemmaCounts[i], (Integer) lemmaCounts[i + 1]);
+        }
+        return counts;
+    }
+
+    private static Set<Integer> pages(ScoredPages pages) {
+        Set<Integer> ids = new HashSet<>();
+        for (int i = 0; i < pages.size(); i++) {
+            ids.add(pages.pageId(i));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,32 @@
+package ru.skillbox.search_engine.util;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class HtmlExtractorTest {
+
+    @Test
+    void matchesFullDocumentParsing() {
+        List<String> pages = List.of(
+                "<html><head><title> Каталог книг </title><style>p{}</style></head><body>"
+                        + "<h1>Книги</h1><p>Новая <b>книга</b> и <a href='/p1.html'>ещё одна</a>.</p>"
+                        + "<ul><li>первая<li>вторая</ul><div>abc</div><div>def<br>ghi</div>"
+                        + "<script>var x = 'скрипт';</script><table><tr><td>1<td>2</table></body></html>",
+                "<p>1<b>2<p>3</b>4</p><i>5<div>6</i>7</div>",
+                "<a href=x><b>1<a href=y>2</b>3</a><table>4<tr><td>5</table><form><select><option>6</select>",
+                "текст без разметки <a href=\"https://example.com/a?b=1#c\">ссылка</a><a>без адреса</a>",
+                "");
+        for (String html : pages) {
+            Document doc = Jsoup.parse(html, "http://localhost/");
+            HtmlExtractor.Extract extract = HtmlExtractor.extract(html, "http://localhost/");
+            assertEquals(doc.title(), extract.title(), html);
+            assertEquals(doc.text(), extract.text(), html);
+            assertEquals(doc.select("a[href]").eachAttr("abs:href"), extract.links(), html);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.skillbox.search_engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LemmaCountsTest {
+
+    @Test
+    void countsInOrderOfFirstOccurrence() {
+        LemmaCounts counts = new LemmaCounts(1);
+        for (String lemma : List.of("дом", "кот", "дом", "book", "дом", "кот")) {
+            counts.increment(lemma);
+        }
+        assertEquals(List.of("дом", "кот", "book"), counts.lemmas());
+        assertEquals(3, counts.get("дом"));
+        assertEquals(0, counts.get("мир"));
+        assertEquals(2, counts.indexOf("book"));
+        assertEquals(-1, counts.indexOf("мир"));
+    }
+
+    @Test
+    void matchesHashMapAfterGrowing() {
+        LemmaCounts counts = new LemmaCounts();
+        Map<String, Integer> expected = new HashMap<>();
+        for (int i = 0; i < 10_000; i++) {
+            String lemma = "lemma" + (i * 7919 % 1500);
+            counts.increment(lemma);
+            expected.merge(lemma, 1, Integer::sum);
+        }
+        Map<String, Integer> actual = new HashMap<>();
+        for (int i = 0; i < counts.size(); i++) {
+            actual.put(counts.lemma(i), counts.count(i));
+        }
+        assertEquals(expected, actual);
+    }
+}
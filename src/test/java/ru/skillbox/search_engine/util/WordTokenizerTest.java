@@ -0,0 +1,38 @@
+package ru.skillbox.search_engine.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class WordTokenizerTest {
+
+    @Test
+    void splitsOnNonLettersAndLowercases() {
+        List<String> words = new ArrayList<>();
+        WordTokenizer.tokenize("  Привет, МИР! Hello-World 42 ёЖик", (word, script) -> words.add(word));
+        assertEquals(List.of("привет", "мир", "hello", "world", "ёжик"), words);
+    }
+
+    @Test
+    void classifiesScripts() {
+        List<WordTokenizer.Script> scripts = new ArrayList<>();
+        WordTokenizer.tokenize("дом house домhouse café", (word, script) -> scripts.add(script));
+        assertEquals(List.of(WordTokenizer.Script.CYRILLIC, WordTokenizer.Script.LATIN,
+                WordTokenizer.Script.MIXED, WordTokenizer.Script.MIXED), scripts);
+    }
+
+    @Test
+    void matchesRegexSplitting() {
+        String text = "Интернет-магазин PlayBack.ru: 129515, Москва; tel +7(495) — Ünïcödé ẞ 𝒜bc";
+        List<String> expected = new ArrayList<>();
+        for (String word : text.toLowerCase().split("\\P{L}+")) {
+            if (!word.isEmpty()) expected.add(word);
+        }
+        List<String> words = new ArrayList<>();
+        WordTokenizer.tokenize(text, (word, script) -> words.add(word));
+        assertEquals(expected, words);
+    }
+}